@@ -0,0 +1,23 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessBoardBenchmark {
+
+    private final ChessBoard board = new ChessBoard();
+
+    @Benchmark
+    public ChessBoard resetBoard() {
+        board.resetBoard();
+        return board;
+    }
+}
@@ -0,0 +1,123 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.GameCodec;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The rules calls the server makes on every move, timed on each corpus position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessGameBenchmark {
+
+    @Param({"start", "italian", "kiwipete", "symmetric", "rookEnding", "pawnEnding"})
+    public String position;
+
+    private ChessGame game;
+    private ChessBoard board;
+    private ChessPosition[] squares;
+    private ChessPiece[] pieces;
+    private String fen;
+    private ByteBuffer encoded;
+    private final Gson gson = new Gson();
+    private String json;
+
+    @Setup
+    public void setUp() {
+        game = Positions.load(position);
+        board = game.getBoard();
+        squares = game.getTeamPositions(ChessGame.TeamColor.WHITE).toArray(new ChessPosition[0]);
+        pieces = new ChessPiece[squares.length];
+        for (int i = 0; i < squares.length; i++) {
+            pieces[i] = board.getPiece(squares[i]);
+        }
+        fen = game.toFen();
+        encoded = ByteBuffer.allocate(GameCodec.size(game));
+        GameCodec.encode(game, encoded);
+        json = gson.toJson(game);
+    }
+
+    @Benchmark
+    public Object validMovesForTeam() {
+        return game.validMoves(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public void validMovesPerPiece(Blackhole blackhole) {
+        for (var square : squares) {
+            blackhole.consume(game.validMoves(square));
+        }
+    }
+
+    @Benchmark
+    public void pieceMoves(Blackhole blackhole) {
+        for (int i = 0; i < squares.length; i++) {
+            blackhole.consume(pieces[i].pieceMoves(board, squares[i]));
+        }
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return game.isInCheck(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return game.isInCheckmate(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public boolean isInStalemate() {
+        return game.isInStalemate(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public ChessGame.GameStatus evaluateStatus() {
+        return game.evaluateStatus(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public String toFen() {
+        return game.toFen();
+    }
+
+    @Benchmark
+    public ChessGame fromFen() {
+        return ChessGame.fromFen(fen);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        encoded.clear();
+        GameCodec.encode(game, encoded);
+        return encoded;
+    }
+
+    @Benchmark
+    public ChessGame decode() {
+        return GameCodec.decode(encoded.rewind());
+    }
+
+    @Benchmark
+    public String encodeJson() {
+        return gson.toJson(game);
+    }
+
+    @Benchmark
+    public ChessGame decodeJson() {
+        return gson.fromJson(json, ChessGame.class);
+    }
+}
@@ -0,0 +1,120 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.MoveList;
+import chess.engine.Evaluator;
+import chess.engine.Network;
+import chess.engine.NnueEvaluator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluations per second for a plain material count, the tapered piece-square
+ * evaluator and the neural network, on each corpus position. The WithMove variants
+ * also make and unmake a move, so they include the cost of keeping the incremental
+ * state up to date.
+ * <p>
+ * The network is random unless a weights file is given with {@code -p weights=<file>};
+ * the speed only depends on its size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+    // indexed by PieceType ordinal: king, queen, bishop, knight, rook, pawn
+    private static final int[] MATERIAL = {0, 900, 330, 320, 500, 100};
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    @Param({"start", "kiwipete", "rookEnding"})
+    public String position;
+
+    @Param({"256"})
+    public int hidden;
+
+    @Param({""})
+    public String weights;
+
+    private ChessGame game;
+    private Evaluator evaluator;
+    private NnueEvaluator nnue;
+    private int move;
+
+    @Setup
+    public void setUp() throws IOException {
+        game = Positions.load(position);
+        evaluator = new Evaluator();
+        nnue = new NnueEvaluator(weights.isEmpty() ? randomNetwork() : Network.load(Path.of(weights)));
+        nnue.attach(game);
+        var moves = new MoveList();
+        game.generateMoves(moves);
+        move = moves.get(0);
+    }
+
+    private Network randomNetwork() throws IOException {
+        var random = new Random(42);
+        var featureWeights = new short[2 * 6 * 64 * hidden];
+        var hiddenBiases = new short[hidden];
+        var outputWeights = new short[2 * hidden];
+        for (int i = 0; i < featureWeights.length; i++) {
+            featureWeights[i] = (short) random.nextInt(-40, 41);
+        }
+        for (int i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = (short) random.nextInt(-64, 65);
+        }
+        // through a file, the way a trained network would arrive
+        var file = Files.createTempFile("random", ".nnue");
+        try {
+            new Network(hidden, featureWeights, hiddenBiases, outputWeights, 0).save(file);
+            return Network.load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public int materialCount() {
+        var board = game.getBoard();
+        int score = 0;
+        for (var type : TYPES) {
+            score += MATERIAL[type.ordinal()] * (Long.bitCount(board.getBitboard(ChessGame.TeamColor.WHITE, type))
+                    - Long.bitCount(board.getBitboard(ChessGame.TeamColor.BLACK, type)));
+        }
+        return game.getTeamTurn() == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    @Benchmark
+    public int pieceSquare() {
+        return evaluator.evaluate(game);
+    }
+
+    @Benchmark
+    public int nnue() {
+        return nnue.evaluate(game);
+    }
+
+    @Benchmark
+    public int pieceSquareWithMove() {
+        game.doMove(move);
+        int score = evaluator.evaluate(game);
+        game.undoMove();
+        return score;
+    }
+
+    @Benchmark
+    public int nnueWithMove() {
+        game.doMove(move);
+        int score = nnue.evaluate(game);
+        game.undoMove();
+        return score;
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.engine.LazySmpSearcher;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to finish a fixed-depth search with 1 to 8 Lazy SMP threads, starting from an
+ * empty table each time. The time to reach a given depth is what a faster search buys,
+ * so it should drop as threads are added. Each result also carries the nodes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LazySmpBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"kiwipete", "symmetric", "rookEnding"})
+    public String position;
+
+    @Param({"7"})
+    public int depth;
+
+    private ChessGame game;
+    private TranspositionTable table;
+    private LazySmpSearcher searcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        game = Positions.load(position);
+        table = new TranspositionTable(64);
+        searcher = new LazySmpSearcher(threads, table);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        table.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        searcher.close();
+    }
+
+    @Benchmark
+    public SearchResult timeToDepth() {
+        return searcher.search(game, SearchLimits.ofDepth(depth));
+    }
+}
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import chess.ChessGame;
+
+import java.util.Map;
+
+/**
+ * The fixed positions every benchmark runs on: two openings, two middlegames and two
+ * endgames. White is to move in all of them.
+ */
+final class Positions {
+
+    static final Map<String, String> FENS = Map.of(
+            "start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -",
+            "italian", "r1bqk1nr/pppp1ppp/2n5/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq -",
+            "kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+            "symmetric", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - -",
+            "rookEnding", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - -",
+            "pawnEnding", "8/5pk1/6p1/3K3p/7P/6P1/8/8 w - -");
+
+    private Positions() {
+    }
+
+    static ChessGame load(String name) {
+        return ChessGame.fromFen(FENS.get(name));
+    }
+}
@@ -1,11 +1,23 @@
+import chess.engine.OpeningBook;
+import chess.engine.Tablebases;
 import server.Server;
+import service.GameplayService;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class Main {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) { // an opening book for the computer player
+            GameplayService.setOpeningBook(OpeningBook.open(Path.of(args[0])));
+        }
+        if (args.length > 1) { // a directory of endgame tables
+            GameplayService.setTablebases(Tablebases.open(Path.of(args[1])));
+        }
         Server server = new Server();
         server.run(8080);
 
         System.out.println("♕ 240 Chess Server");
     }
-}
\ No newline at end of file
+}
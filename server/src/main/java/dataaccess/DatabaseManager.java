@@ -8,6 +8,7 @@ public class DatabaseManager {
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    private static volatile boolean gameColumnChecked;
 
     /*
      * Load the database information for the db.properties file.
@@ -62,7 +63,7 @@ public class DatabaseManager {
                     "whiteUsername VARCHAR(100) DEFAULT NULL," +
                     "blackUsername VARCHAR(100) DEFAULT NULL," +
                     "gameName VARCHAR(100)," +
-                    "game VARCHAR(10000) DEFAULT NULL," + // serialized game string
+                    "game BLOB DEFAULT NULL," + // encoded with GameCodec, position and move history
                     "isGameOver VARCHAR(10) DEFAULT NULL" +
                     ")";
             var authStatement = "CREATE TABLE IF NOT EXISTS auth (" +
@@ -72,12 +73,36 @@ public class DatabaseManager {
             createTable(conn, userStatement);
             createTable(conn, gameStatement);
             createTable(conn, authStatement);
+            if (!gameColumnChecked) {
+                migrateGameColumn(conn);
+                gameColumnChecked = true;
+            }
             return conn;
         } catch (SQLException ex) {
             throw new DataAccessException("failed to get connection", ex);
         }
     }
 
+    /**
+     * Databases made before games were stored with GameCodec keep them as JSON in a
+     * VARCHAR or VARBINARY column, which CREATE TABLE IF NOT EXISTS leaves alone. Widens
+     * the column to a BLOB. The JSON rows stay readable (SQLDataAccess falls back to
+     * Gson for them) and turn into GameCodec bytes the next time they're saved.
+     */
+    static void migrateGameColumn(Connection conn) throws SQLException {
+        try (var query = conn.prepareStatement("SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = 'games' AND COLUMN_NAME = 'game'")) {
+            query.setString(1, databaseName);
+            try (var rs = query.executeQuery()) {
+                if (rs.next() && !"blob".equalsIgnoreCase(rs.getString(1))) {
+                    try (var alter = conn.prepareStatement("ALTER TABLE games MODIFY game BLOB DEFAULT NULL")) {
+                        alter.executeUpdate();
+                    }
+                }
+            }
+        }
+    }
+
     private static void loadPropertiesFromResources() {
         try (var propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("db.properties")) {
             if (propStream == null) {
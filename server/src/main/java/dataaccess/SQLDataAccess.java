@@ -1,12 +1,16 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.GameCodec;
 import com.google.gson.Gson;
 import datamodel.AuthData;
 import datamodel.GameData;
 import datamodel.UserData;
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.UUID;
 
@@ -146,8 +150,7 @@ public class SQLDataAccess implements DataAccess {
             int gameID = countGames() + 1;
             statement.setInt(1, gameID);
             statement.setString(2, gameName);
-            var game = new Gson().toJson(new ChessGame()); // default chess board? if it works
-            statement.setString(3, game);
+            statement.setBytes(3, GameCodec.encode(new ChessGame()));
             statement.executeUpdate();
             return gameID;
         }
@@ -157,7 +160,7 @@ public class SQLDataAccess implements DataAccess {
     public void updateGame(int gameID, ChessGame game) throws Exception {
         try (var connection = DatabaseManager.getConnection()) {
             var statement = connection.prepareStatement("UPDATE games SET game = ? WHERE gameID = ?");
-            statement.setString(1, new Gson().toJson(game));
+            statement.setBytes(1, GameCodec.encode(game));
             statement.setInt(2, gameID);
             statement.executeUpdate();
         }
@@ -174,9 +177,7 @@ public class SQLDataAccess implements DataAccess {
                     var whiteUsername = rs.getString("whiteUsername");
                     var blackUsername = rs.getString("blackUsername");
                     var gameName = rs.getString("gameName");
-                    var gameJson = rs.getString("game");
-                    var serializer = new Gson();
-                    var game = serializer.fromJson(gameJson, ChessGame.class);
+                    var game = readGame(rs);
                     return new GameData(gameID, whiteUsername, blackUsername, gameName, game);
                 }
             }
@@ -215,9 +216,7 @@ public class SQLDataAccess implements DataAccess {
                 var whiteUsername = rs.getString("whiteUsername");
                 var blackUsername = rs.getString("blackUsername");
                 var gameName = rs.getString("gameName");
-                var gameJson = rs.getString("game");
-                var serializer = new Gson();
-                var game = serializer.fromJson(gameJson, ChessGame.class);
+                var game = readGame(rs);
                 var gameData = new GameData(gameID, whiteUsername, blackUsername, gameName, game);
                 allGames.add(gameData);
             }
@@ -250,4 +249,22 @@ public class SQLDataAccess implements DataAccess {
             throw new DataAccessException("Invalid GameID");
         }
     }
+
+
+    private static ChessGame readGame(ResultSet rs) throws SQLException {
+        var bytes = rs.getBytes("game");
+        if (bytes == null) {
+            return null;
+        }
+        // rows saved before GameCodec hold Gson JSON, which no codec version starts like
+        if (bytes.length > 0 && bytes[0] == '{') {
+            var game = new Gson().fromJson(new String(bytes, StandardCharsets.UTF_8), ChessGame.class);
+            // they hold only the board, turn and whether it's over, so set the game up from its
+            // board the way a new position is: castling rights from where the kings and rooks
+            // stand, and no move history or halfmove clock
+            game.setBoard(game.getBoard());
+            return game;
+        }
+        return GameCodec.decode(bytes);
+    }
 }
@@ -0,0 +1,7 @@
+package datamodel;
+
+import chess.ChessGame;
+import chess.ChessMove;
+
+public record ComputerMove(ChessMove move, ChessGame game) {
+}
@@ -5,6 +5,7 @@ import dataaccess.*;
 import datamodel.*;
 import io.javalin.http.Context;
 import service.GameService;
+import service.GameplayService;
 import service.UserService;
 
 import java.util.ArrayList;
@@ -137,6 +138,53 @@ public class HttpHandler {
         ctx.result();
     }
 
+    public void addComputerOpponent(Context ctx) {
+        try {
+            var serializer = new Gson();
+            String requestJson = ctx.body();
+            var joinGameRequest = serializer.fromJson(requestJson, JoinGameRequest.class);
+            gameService.addComputerOpponent(joinGameRequest, ctx.header("authorization"));
+        } catch (UnauthorizedException ex) {
+            var message = String.format("{\"message\": \"Error: %s\"}", ex.getMessage());
+            ctx.status(401).result(message);
+        } catch (BadRequestException | NoExistingGameException ex) { // bad request
+            var message = String.format("{\"message\": \"Error: %s\"}", ex.getMessage());
+            ctx.status(400).result(message);
+        } catch (AlreadyTakenException ex) {
+            var message = String.format("{\"message\": \"Error: %s\"}", ex.getMessage());
+            ctx.status(403).result(message);
+        } catch (Exception ex) {
+            var message = String.format("{\"message\": \"Error: %s\"}", ex.getMessage());
+            ctx.status(500).result(message);
+        }
+        ctx.result();
+    }
+
+    /**
+     * Reports how the shared legal move cache and the computer player are doing, to any
+     * logged-in user
+     */
+    public void stats(Context ctx) {
+        try {
+            var serializer = new Gson();
+            gameService.authorize(ctx.header("authorization"));
+            var moveCacheStats = GameplayService.getMoveCacheStats();
+            var moveCache = serializer.toJsonTree(moveCacheStats).getAsJsonObject();
+            moveCache.addProperty("hitRate", moveCacheStats.hitRate());
+            var computer = Map.of("fallbackSearches", GameplayService.getFallbackSearches());
+            ctx.result(serializer.toJson(Map.of("moveCache", moveCache, "computer", computer)));
+        } catch (UnauthorizedException ex) {
+            var message = String.format("{\"message\": \"Error: %s\"}", ex.getMessage());
+            ctx.status(401).result(message);
+        } catch (BadRequestException ex) { // bad request
+            var message = String.format("{\"message\": \"Error: %s\"}", ex.getMessage());
+            ctx.status(400).result(message);
+        } catch (Exception ex) {
+            var message = String.format("{\"message\": \"Error: %s\"}", ex.getMessage());
+            ctx.status(500).result(message);
+        }
+    }
+
     public void clear(Context ctx) {
         try {
             userService.clear();
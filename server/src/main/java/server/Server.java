@@ -25,7 +25,9 @@ public class Server {
         server.get("game", httpHandler::listGames);
         server.post("game", httpHandler::createGame);
         server.put("game", httpHandler::joinGame);
+        server.put("game/computer", httpHandler::addComputerOpponent);
         server.delete("db", httpHandler::clear);
+        server.get("stats", httpHandler::stats);
         server.ws("/ws", ws -> {
             ws.onConnect(websocketHandler::onConnect);
             ws.onMessage(websocketHandler::onMessage);
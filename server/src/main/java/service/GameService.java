@@ -76,4 +76,49 @@ public class GameService {
             }
         }
     }
+
+    /**
+     * Checks the auth token, for requests that need nothing but a logged-in user
+     */
+    public void authorize(String authToken) throws Exception {
+        try {
+            if (authToken == null) {
+                throw new BadRequestException("Bad request");
+            }
+            dataAccess.getAuth(authToken);
+        } catch (DataAccessException ex) { // catches if getAuth throws (auth not found)
+            if (ex.getMessage().equals("failed to get connection")) {
+                throw new SQLException(ex.getMessage());
+            }
+            throw new UnauthorizedException("Unauthorized auth");
+        }
+    }
+
+
+    /**
+     * Seats the computer in a game, on the color in the request
+     */
+    public void addComputerOpponent(JoinGameRequest joinGameRequest, String authToken) throws Exception {
+        try {
+            if (joinGameRequest.playerColor() == null || authToken == null) {
+                throw new BadRequestException("Bad request");
+            }
+            dataAccess.getAuth(authToken);
+            var gameData = dataAccess.getGame(joinGameRequest.gameID());
+            if ((joinGameRequest.playerColor().equals("WHITE") && gameData.whiteUsername() != null) ||
+                    (joinGameRequest.playerColor().equals("BLACK") && gameData.blackUsername() != null)) {
+                throw new AlreadyTakenException("team already taken");
+            }
+            dataAccess.joinGame(GameplayService.COMPUTER_USERNAME, joinGameRequest.gameID(),
+                    joinGameRequest.playerColor());
+        } catch (DataAccessException ex) {
+            switch (ex.getMessage()) {
+                case "failed to get connection" -> throw new SQLException(ex.getMessage());
+                case "Game not found", "Invalid gameID" -> throw new NoExistingGameException("No existing game");
+                case "Auth not found" -> throw new UnauthorizedException("Unauthorized auth");
+                case "Invalid playerColor" -> throw new BadRequestException("Invalid playerColor");
+                default -> throw ex;
+            }
+        }
+    }
 }
@@ -1,10 +1,47 @@
 package service;
 
 import chess.*;
+import chess.engine.*;
 import dataaccess.*;
 import datamodel.*;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class GameplayService {
+    // the seat name for the built-in opponent; no player can register it
+    public static final String COMPUTER_USERNAME = "computer";
+    // the computer answers within half a second however busy the server is, waiting for a searcher included
+    private static final long COMPUTER_MILLIS = 500;
+    private static final long COMPUTER_NODES = 5_000_000;
+    // threads for each search, every core unless -Dchess.searchThreads=n says otherwise
+    private static final int SEARCH_THREADS = Math.max(1, Integer.getInteger("chess.searchThreads",
+            Runtime.getRuntime().availableProcessors()));
+    // every searcher shares one table; it needs no locking
+    private static final TranspositionTable SEARCH_TABLE = new TranspositionTable(64);
+    // games search the table at the same time, so it ages on a clock rather than per search
+    private static final long TABLE_GENERATION_SECONDS = 5;
+    private static final ScheduledExecutorService TABLE_CLOCK = tableClock();
+    // enough searchers to keep every core busy, lent out one game at a time
+    private static final BlockingQueue<LazySmpSearcher> SEARCHERS = searcherPool();
+    // the quick search used when no pooled searcher frees up in time, with a table of its own
+    // so its results don't crowd out the real searches'
+    private static final ThreadLocal<Searcher> FALLBACK_SEARCHER =
+            ThreadLocal.withInitial(() -> new Searcher(new TranspositionTable(1)));
+    private static final AtomicLong FALLBACK_SEARCHES = new AtomicLong();
+
+    // one for the whole server, so games share the positions they have in common
+    private static final LegalMoveCache MOVE_CACHE = new LegalMoveCache(64L << 20);
+    // opening replies come from here while the game is still in it, or null to always search
+    private static volatile OpeningBook openingBook;
+    // exact endgame play once few enough pieces are left, or null to always search
+    private static volatile Tablebases tablebases;
+
     private final DataAccess dataAccess;
 
 
@@ -36,6 +73,7 @@ public class GameplayService {
         try {
             GameData gameData = dataAccess.getGame(gameID);
             var game = gameData.game();
+            game.setMoveCache(MOVE_CACHE); // also serves the status checks on the returned game
             var piece = game.getBoard().getPiece(move.getStartPosition());
             if (piece != null && piece.getTeamColor() != teamColor) { // attempting to move an enemy piece
                 throw new InvalidMoveException("Can't move enemy piece");
@@ -49,6 +87,127 @@ public class GameplayService {
     }
 
 
+    /**
+     * @return true if the computer sits in the game and it's its turn, going by the game
+     * data as given rather than reading it again
+     */
+    public static boolean isComputerTurn(GameData gameData) {
+        var game = gameData.game();
+        var seat = game.getTeamTurn() == ChessGame.TeamColor.WHITE
+                ? gameData.whiteUsername() : gameData.blackUsername();
+        return !game.getIsGameOver() && COMPUTER_USERNAME.equals(seat);
+    }
+
+
+    /**
+     * Plays the computer's move in the given game if it's the computer's turn. The game is
+     * searched as given; it's only read again to check nobody resigned while the computer
+     * was thinking.
+     *
+     * @return the move and the updated game, or null if the computer isn't due to move
+     */
+    public ComputerMove makeComputerMove(GameData gameData) throws Exception {
+        long start = System.nanoTime();
+        if (!isComputerTurn(gameData)) {
+            return null;
+        }
+        try {
+            var game = gameData.game();
+            game.setMoveCache(MOVE_CACHE);
+            var endgames = tablebases;
+            var move = endgames == null ? null : endgames.bestMove(game);
+            var book = openingBook;
+            if (move == null && book != null) {
+                move = book.pickMove(game, ThreadLocalRandom.current());
+            }
+            if (move == null) {
+                move = search(game, start);
+            }
+            if (move == null) { // checkmated or stalemated, the status check after the last move covers it
+                return null;
+            }
+            if (dataAccess.getGame(gameData.gameID()).game().getIsGameOver()) {
+                return null; // resigned or ended meanwhile, so don't bring the game back
+            }
+            game.makeMove(move);
+            dataAccess.updateGame(gameData.gameID(), game);
+            return new ComputerMove(move, game);
+        } catch (DataAccessException ex) {
+            throw new NoExistingGameException("No existing game");
+        }
+    }
+
+
+    private static ScheduledExecutorService tableClock() {
+        var clock = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "search-table-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        clock.scheduleAtFixedRate(SEARCH_TABLE::newSearch,
+                TABLE_GENERATION_SECONDS, TABLE_GENERATION_SECONDS, TimeUnit.SECONDS);
+        return clock;
+    }
+
+
+    private static BlockingQueue<LazySmpSearcher> searcherPool() {
+        int size = Math.max(1, Runtime.getRuntime().availableProcessors() / SEARCH_THREADS);
+        var pool = new ArrayBlockingQueue<LazySmpSearcher>(size);
+        for (int i = 0; i < size; i++) {
+            pool.add(new LazySmpSearcher(SEARCH_THREADS, SEARCH_TABLE));
+        }
+        return pool;
+    }
+
+
+    /**
+     * Searches with a pooled searcher for whatever is left of the time budget after
+     * waiting for one. If none frees up in time, a one-ply search on the spot still
+     * gives a legal move within the budget; {@link #getFallbackSearches} counts how often.
+     */
+    private static ChessMove search(ChessGame game, long start) throws InterruptedException {
+        long waitMillis = COMPUTER_MILLIS - (System.nanoTime() - start) / 1_000_000;
+        var searcher = waitMillis > 0 ? SEARCHERS.poll(waitMillis, TimeUnit.MILLISECONDS) : null;
+        if (searcher == null) {
+            long fallbacks = FALLBACK_SEARCHES.incrementAndGet();
+            System.out.printf("No searcher free within %d ms, searching one ply (%d times so far)%n",
+                    COMPUTER_MILLIS, fallbacks);
+            return FALLBACK_SEARCHER.get().search(game, SearchLimits.ofDepth(1)).bestMove();
+        }
+        try {
+            long leftMillis = Math.max(1, COMPUTER_MILLIS - (System.nanoTime() - start) / 1_000_000);
+            return searcher.search(game, new SearchLimits(SearchLimits.MAX_DEPTH, COMPUTER_NODES, leftMillis))
+                    .bestMove();
+        } finally {
+            SEARCHERS.add(searcher);
+        }
+    }
+
+
+    public static void setOpeningBook(OpeningBook book) {
+        openingBook = book;
+    }
+
+
+    public static void setTablebases(Tablebases tables) {
+        tablebases = tables;
+    }
+
+
+    public static LegalMoveCache.Stats getMoveCacheStats() {
+        return MOVE_CACHE.getStats();
+    }
+
+
+    /**
+     * @return how many computer moves came from a one-ply search because every pooled
+     * searcher was busy for the whole time budget
+     */
+    public static long getFallbackSearches() {
+        return FALLBACK_SEARCHES.get();
+    }
+
+
     public UserData getPlayer(String authToken) throws Exception {
         try {
             AuthData authData = dataAccess.getAuth(authToken);
@@ -18,6 +18,9 @@ public class UserService {
             if (registerRequest.username() == null || registerRequest.email() == null|| registerRequest.password() == null) {
                 throw new BadRequestException("Bad request");
             }
+            if (registerRequest.username().equals(GameplayService.COMPUTER_USERNAME)) {
+                throw new AlreadyTakenException("Already exists");
+            }
             dataAccess.createUser(new UserData(registerRequest.username(), registerRequest.email(), registerRequest.password()));
             return dataAccess.createAuth(registerRequest.username());
         } catch (DataAccessException ex) {
@@ -10,10 +10,22 @@ import service.GameplayService;
 import websocket.commands.*;
 import websocket.messages.*;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class WebsocketHandler {
     private final GameplayService gameplayService;
     private final ConnectionsManager connectionsManager;
+    // the computer thinks on these threads, so no player's socket waits on its search
+    private final ExecutorService computerMoves = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "computer-move");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // games the computer is already thinking in, so it never answers one move twice
+    private final Set<Integer> computerThinking = ConcurrentHashMap.newKeySet();
 
     public WebsocketHandler(DataAccess dataAccess) {
         gameplayService = new GameplayService(dataAccess);
@@ -77,6 +89,9 @@ public class WebsocketHandler {
                                 username)), command.getGameID());
             }
             ctx.send(new Gson().toJson(new LoadGameMessage(gameData.game())));
+            if (isPlayer) {
+                playComputerMove(gameData, command, ctx); // the computer opens when it plays white
+            }
         } catch (Exception ex) {
             var errorMessageString = new Gson().toJson(new ErrorMessage(ex.getMessage()));
             ctx.send(errorMessageString);
@@ -116,44 +131,115 @@ public class WebsocketHandler {
                             username,
                             move.toString())), command.getGameID());
 
+            if (broadcastStatus(updatedGame, enemyColor, enemyUsername, command)) {
+                // if the enemy is the computer, answer right away
+                playComputerMove(new GameData(gameData.gameID(), gameData.whiteUsername(),
+                        gameData.blackUsername(), gameData.gameName(), updatedGame), command, ctx);
+            }
+        } catch (Exception ex) {
+            var errorMessage = new ErrorMessage(ex.getMessage());
+            var errorMessageString = new Gson().toJson(errorMessage);
+            ctx.send(errorMessageString);
+        }
+    }
+
+
+    /**
+     * Tells everyone in the game if the team to move is in check, checkmate or stalemate,
+     * or if the game is drawn by repetition, the fifty-move rule or insufficient material,
+     * ending the game on all but check, and sends out the new board
+     *
+     * @return true if the game goes on
+     */
+    private boolean broadcastStatus(ChessGame updatedGame, ChessGame.TeamColor enemyColor, String enemyUsername,
+                                    UserGameCommand command) throws Exception {
+        var status = updatedGame.evaluateStatus(enemyColor);
+        var drawReason = updatedGame.getDrawReason();
+        if (status != ChessGame.GameStatus.CHECKMATE && status != ChessGame.GameStatus.STALEMATE && drawReason != null) {
+            // end drawn games so nobody is left moving pieces around forever
+            connectionsManager.broadcastNotif(null, // send to sender as well
+                    new NotificationMessage(String.format("Draw by %s!\n ", switch (drawReason) {
+                        case THREEFOLD_REPETITION -> "threefold repetition";
+                        case FIFTY_MOVE_RULE -> "the fifty-move rule";
+                        case INSUFFICIENT_MATERIAL -> "insufficient material";
+                    })), command.getGameID());
+            connectionsManager.broadcastGame(
+                    new LoadGameMessage(gameplayService.endGame(command.getAuthToken(), command.getGameID())),
+                    command.getGameID());
+            return false;
+        }
+        switch (status) {
             // send notif if a team is in checkmate and end the game
-            if (updatedGame.isInCheckmate(enemyColor)) {
+            case CHECKMATE -> {
                 connectionsManager.broadcastNotif(null, // send to sender as well
                         new NotificationMessage(String.format("Checkmate! %s loses!\n", enemyUsername)),
                         command.getGameID());
                 connectionsManager.broadcastGame(
                         new LoadGameMessage(gameplayService.endGame(command.getAuthToken(), command.getGameID())),
                         command.getGameID());
+                return false;
             }
 
             // send notif if enemy team is in check.
-            else if (updatedGame.isInCheck(enemyColor)) {
+            case CHECK -> {
                 connectionsManager.broadcastNotif(null, // send to sender as well
                         new NotificationMessage(String.format("%s is in check!\n " +
                                         "Moves that do not get them out of check are considered illegal."
                                 , enemyUsername)), command.getGameID());
                 connectionsManager.broadcastGame(new LoadGameMessage(updatedGame), command.getGameID());
+                return true;
             }
 
             // send notif if there is a stalemate.
-            else if (updatedGame.isInStalemate(enemyColor)) {
+            case STALEMATE -> {
                 connectionsManager.broadcastNotif(null, // send to sender as well
                         new NotificationMessage(
                                 String.format("Draw! %s is in a stalemate!\n ", enemyUsername)), command.getGameID());
                 connectionsManager.broadcastGame(
                         new LoadGameMessage(gameplayService.endGame(command.getAuthToken(), command.getGameID())),
                         command.getGameID());
-            } else {
+                return false;
+            }
+            default -> {
                 connectionsManager.broadcastGame(new LoadGameMessage(updatedGame), command.getGameID()); // send normal updated
+                return true;
             }
-        } catch (Exception ex) {
-            var errorMessage = new ErrorMessage(ex.getMessage());
-            var errorMessageString = new Gson().toJson(errorMessage);
-            ctx.send(errorMessageString);
         }
     }
 
 
+    /**
+     * Lets the computer move if it's sitting in the game and it's its turn. The search
+     * runs on its own thread, and everyone in the game hears about the move once it's made.
+     */
+    private void playComputerMove(GameData gameData, UserGameCommand command, WsMessageContext ctx) {
+        if (!GameplayService.isComputerTurn(gameData) || !computerThinking.add(gameData.gameID())) {
+            return;
+        }
+        computerMoves.execute(() -> {
+            try {
+                var computerMove = gameplayService.makeComputerMove(gameData);
+                if (computerMove == null) {
+                    return;
+                }
+                var playerColor = computerMove.game().getTeamTurn();
+                String playerUsername = playerColor == ChessGame.TeamColor.WHITE
+                        ? gameData.whiteUsername() : gameData.blackUsername();
+                connectionsManager.broadcastNotif(null,
+                        new NotificationMessage(String.format("%s moved %s.",
+                                GameplayService.COMPUTER_USERNAME,
+                                computerMove.move().toString())), command.getGameID());
+                broadcastStatus(computerMove.game(), playerColor, playerUsername, command);
+            } catch (Exception ex) {
+                var errorMessageString = new Gson().toJson(new ErrorMessage(ex.getMessage()));
+                ctx.send(errorMessageString);
+            } finally {
+                computerThinking.remove(gameData.gameID());
+            }
+        });
+    }
+
+
     private void leave(UserGameCommand command, WsMessageContext ctx) {
         try {
             UserData userData = gameplayService.getPlayer(command.getAuthToken());
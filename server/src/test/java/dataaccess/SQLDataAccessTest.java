@@ -1,5 +1,6 @@
 package dataaccess;
 
+import chess.ChessGame;
 import datamodel.AuthData;
 import datamodel.GameData;
 import datamodel.UserData;
@@ -14,6 +15,19 @@ import java.util.ArrayList;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class SQLDataAccessTest {
+    // a game after 1.e4 e5 2.Ke2, as Gson wrote it before GameCodec, when ChessBoard was a piece array
+    private static final String BASELINE_GAME_JSON =
+            "{\"board\":{\"board\":["
+            + "[{\"pieceColor\":\"WHITE\",\"type\":\"ROOK\"},{\"pieceColor\":\"WHITE\",\"type\":\"KNIGHT\"},{\"pieceColor\":\"WHITE\",\"type\":\"BISHOP\"},{\"pieceColor\":\"WHITE\",\"type\":\"QUEEN\"},null,{\"pieceColor\":\"WHITE\",\"type\":\"BISHOP\"},{\"pieceColor\":\"WHITE\",\"type\":\"KNIGHT\"},{\"pieceColor\":\"WHITE\",\"type\":\"ROOK\"}],"
+            + "[{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"},{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"},{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"},{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"},{\"pieceColor\":\"WHITE\",\"type\":\"KING\"},{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"},{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"},{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"}],"
+            + "[null,null,null,null,null,null,null,null],"
+            + "[null,null,null,null,{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"},null,null,null],"
+            + "[null,null,null,null,{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"},null,null,null],"
+            + "[null,null,null,null,null,null,null,null],"
+            + "[{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"},{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"},{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"},{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"},null,{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"},{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"},{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"}],"
+            + "[{\"pieceColor\":\"BLACK\",\"type\":\"ROOK\"},{\"pieceColor\":\"BLACK\",\"type\":\"KNIGHT\"},{\"pieceColor\":\"BLACK\",\"type\":\"BISHOP\"},{\"pieceColor\":\"BLACK\",\"type\":\"QUEEN\"},{\"pieceColor\":\"BLACK\",\"type\":\"KING\"},{\"pieceColor\":\"BLACK\",\"type\":\"BISHOP\"},{\"pieceColor\":\"BLACK\",\"type\":\"KNIGHT\"},{\"pieceColor\":\"BLACK\",\"type\":\"ROOK\"}]"
+            + "]},\"currentTurn\":\"BLACK\",\"isGameOver\":false}";
+
 
     @BeforeEach
     void clearAll() throws Exception {
@@ -173,4 +187,25 @@ public class SQLDataAccessTest {
         DataAccess db = new SQLDataAccess();
         assertThrows(DataAccessException.class, () -> db.createGameData(null));
     }
+
+    @Test
+    void readsGamesSavedAsJson() throws Exception {
+        DataAccess db = new SQLDataAccess();
+        var gameID = db.createGameData("oldGame");
+        try (var connection = DatabaseManager.getConnection();
+             var statement = connection.prepareStatement("UPDATE games SET game = ? WHERE gameID = ?")) {
+            statement.setString(1, BASELINE_GAME_JSON);
+            statement.setInt(2, gameID);
+            statement.executeUpdate();
+        }
+        var expected = ChessGame.fromFen("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPPKPPP/RNBQ1BNR b kq - 0 1");
+        var game = db.getGame(gameID).game();
+        assertEquals(expected.getBoard(), game.getBoard());
+        assertEquals(expected.getZobristKey(), game.getZobristKey()); // white can't castle any more
+        assertEquals(0, game.getHalfmoveClock());
+        assertNull(game.getDrawReason());
+
+        db.updateGame(gameID, game);
+        assertEquals(expected.getZobristKey(), db.getGame(gameID).game().getZobristKey());
+    }
 }
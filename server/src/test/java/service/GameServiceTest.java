@@ -1,5 +1,6 @@
 package service;
 
+import chess.ChessGame;
 import dataaccess.*;
 import datamodel.*;
 import org.junit.jupiter.api.BeforeAll;
@@ -119,4 +120,38 @@ public class GameServiceTest {
         assertThrows(Exception.class, () -> gameService.joinGame(joinGameRequest, authData.authToken()));
     }
 
+    @Test
+    void computerOpensAsWhite() throws Exception {
+        var registerRequest = new RegisterRequest("joe", "joe@email.com", "password");
+        AuthData authData = userService.register(registerRequest);
+        int gameID = gameService.createGame(new CreateGameRequest("testGame"), authData.authToken());
+        db.updateGame(gameID, new ChessGame());
+        gameService.joinGame(new JoinGameRequest("BLACK", gameID), authData.authToken());
+        gameService.addComputerOpponent(new JoinGameRequest("WHITE", gameID), authData.authToken());
+        assertEquals(GameplayService.COMPUTER_USERNAME, db.getGame(gameID).whiteUsername());
+
+        var computerMove = new GameplayService(db).makeComputerMove(db.getGame(gameID));
+        assertNotNull(computerMove);
+        assertEquals(ChessGame.TeamColor.BLACK, db.getGame(gameID).game().getTeamTurn());
+        assertNull(new GameplayService(db).makeComputerMove(db.getGame(gameID))); // the player's turn now
+    }
+
+    @Test
+    void computerSeatTaken() throws Exception {
+        var registerRequest = new RegisterRequest("joe", "joe@email.com", "password");
+        AuthData authData = userService.register(registerRequest);
+        int gameID = gameService.createGame(new CreateGameRequest("testGame"), authData.authToken());
+        gameService.joinGame(new JoinGameRequest("WHITE", gameID), authData.authToken());
+        assertThrows(AlreadyTakenException.class, () ->
+                gameService.addComputerOpponent(new JoinGameRequest("WHITE", gameID), authData.authToken()));
+    }
+
+    @Test
+    void authorizeRejectsUnknownToken() throws Exception {
+        var registerRequest = new RegisterRequest("joe", "joe@email.com", "password");
+        AuthData authData = userService.register(registerRequest);
+        gameService.authorize(authData.authToken());
+        assertThrows(UnauthorizedException.class, () -> gameService.authorize("notAToken"));
+        assertThrows(BadRequestException.class, () -> gameService.authorize(null));
+    }
 }
@@ -0,0 +1,199 @@
+package chess;
+
+/**
+ * Attack masks for every piece type, built once when the class loads.
+ * <p>
+ * Knights, kings and pawns are plain per-square tables. Rooks and bishops use magic
+ * bitboards: the blockers on a slider's rays are multiplied by a per-square magic
+ * number so the top bits form a perfect index into a table of precomputed attacks.
+ * Queens are the union of the two.
+ */
+final class Attacks {
+
+    static final long[] KNIGHT = new long[64];
+    static final long[] KING = new long[64];
+    static final long[][] PAWN = new long[2][64]; // [team][square], squares a pawn there captures on
+    static final long[][] BETWEEN = new long[64][64]; // squares strictly between two aligned squares
+    static final long[][] LINE = new long[64][64]; // the whole row, column or diagonal through two aligned squares
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] KNIGHT_JUMPS = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+
+    private static final Magic[] ROOK_MAGICS = new Magic[64];
+    private static final Magic[] BISHOP_MAGICS = new Magic[64];
+    private static final long[] ROOK_TABLE = new long[0x19000];
+    private static final long[] BISHOP_TABLE = new long[0x1480];
+
+    // seeds that find a full set of magics quickly, one per row
+    private static final long[] SEEDS = {728, 10316, 55013, 32803, 12281, 15100, 16645, 255};
+
+    private record Magic(long mask, long magic, int shift, int offset) {
+        int index(long occupied) {
+            return offset + (int) (((occupied & mask) * magic) >>> shift);
+        }
+    }
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT[square] = jumpAttacks(square, KNIGHT_JUMPS);
+            KING[square] = slidingAttacks(square, ROOK_DIRECTIONS, -1L) | slidingAttacks(square, BISHOP_DIRECTIONS, -1L);
+            long bit = Bitboards.bit(square);
+            PAWN[ChessGame.TeamColor.WHITE.ordinal()][square] = ((bit & ~Bitboards.FILE_A) << 7) | ((bit & ~Bitboards.FILE_H) << 9);
+            PAWN[ChessGame.TeamColor.BLACK.ordinal()][square] = ((bit & ~Bitboards.FILE_H) >>> 7) | ((bit & ~Bitboards.FILE_A) >>> 9);
+        }
+        initMagics(ROOK_MAGICS, ROOK_TABLE, ROOK_DIRECTIONS);
+        initMagics(BISHOP_MAGICS, BISHOP_TABLE, BISHOP_DIRECTIONS);
+
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                long ends = Bitboards.bit(a) | Bitboards.bit(b);
+                if (a != b && (rook(a, 0L) & Bitboards.bit(b)) != 0) {
+                    BETWEEN[a][b] = rook(a, Bitboards.bit(b)) & rook(b, Bitboards.bit(a));
+                    LINE[a][b] = (rook(a, 0L) & rook(b, 0L)) | ends;
+                } else if (a != b && (bishop(a, 0L) & Bitboards.bit(b)) != 0) {
+                    BETWEEN[a][b] = bishop(a, Bitboards.bit(b)) & bishop(b, Bitboards.bit(a));
+                    LINE[a][b] = (bishop(a, 0L) & bishop(b, 0L)) | ends;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    static long rook(int square, long occupied) {
+        return ROOK_TABLE[ROOK_MAGICS[square].index(occupied)];
+    }
+
+    static long bishop(int square, long occupied) {
+        return BISHOP_TABLE[BISHOP_MAGICS[square].index(occupied)];
+    }
+
+    static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    /**
+     * @return squares attacked by a piece of the given type standing on square. Pawn pushes
+     * are not attacks, so pawns only report their two capture squares.
+     */
+    static long of(ChessPiece.PieceType type, ChessGame.TeamColor team, int square, long occupied) {
+        return switch (type) {
+            case KING -> KING[square];
+            case QUEEN -> queen(square, occupied);
+            case BISHOP -> bishop(square, occupied);
+            case KNIGHT -> KNIGHT[square];
+            case ROOK -> rook(square, occupied);
+            case PAWN -> PAWN[team.ordinal()][square];
+        };
+    }
+
+    private static long jumpAttacks(int square, int[][] jumps) {
+        long attacks = 0L;
+        for (int[] jump : jumps) {
+            int row = Bitboards.row(square) + jump[0];
+            int col = Bitboards.column(square) + jump[1];
+            if (Bitboards.onBoard(row, col)) {
+                attacks |= Bitboards.bit(Bitboards.square(row, col));
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Walks each ray one square at a time, stopping after the first occupied square.
+     * Only used to fill the tables.
+     */
+    private static long slidingAttacks(int square, int[][] directions, long occupied) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int row = Bitboards.row(square) + direction[0];
+            int col = Bitboards.column(square) + direction[1];
+            while (Bitboards.onBoard(row, col)) {
+                long bit = Bitboards.bit(Bitboards.square(row, col));
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static void initMagics(Magic[] magics, long[] table, int[][] directions) {
+        var occupancies = new long[4096];
+        var references = new long[4096];
+        var epochs = new int[4096];
+        int attempt = 0;
+        int offset = 0;
+
+        for (int square = 0; square < 64; square++) {
+            // edge squares never block anything further along the ray, so leave them out of the mask
+            long edges = ((Bitboards.RANK_1 | Bitboards.RANK_8) & ~(Bitboards.RANK_1 << (8 * (square >>> 3))))
+                    | ((Bitboards.FILE_A | Bitboards.FILE_H) & ~(Bitboards.FILE_A << (square & 7)));
+            long mask = slidingAttacks(square, directions, 0L) & ~edges;
+            int shift = 64 - Long.bitCount(mask);
+
+            // enumerate every subset of the mask (carry-rippler)
+            int size = 0;
+            long subset = 0L;
+            do {
+                occupancies[size] = subset;
+                references[size] = slidingAttacks(square, directions, subset);
+                size++;
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+
+            var random = new XorShift(SEEDS[square >>> 3]);
+            Magic magic;
+            int i;
+            do {
+                long candidate;
+                do {
+                    candidate = random.sparse();
+                } while (Long.bitCount((candidate * mask) >>> 56) < 6);
+                magic = new Magic(mask, candidate, shift, offset);
+
+                // a candidate works if no two subsets with different attacks share a slot
+                attempt++;
+                for (i = 0; i < size; i++) {
+                    int index = magic.index(occupancies[i]) - offset;
+                    if (epochs[index] < attempt) {
+                        epochs[index] = attempt;
+                        table[offset + index] = references[i];
+                    } else if (table[offset + index] != references[i]) {
+                        break;
+                    }
+                }
+            } while (i < size);
+
+            magics[square] = magic;
+            offset += size;
+        }
+    }
+
+    /**
+     * Small deterministic generator so the same magics are found on every start-up
+     */
+    private static final class XorShift {
+        private long state;
+
+        XorShift(long seed) {
+            state = seed;
+        }
+
+        long next() {
+            state ^= state >>> 12;
+            state ^= state << 25;
+            state ^= state >>> 27;
+            return state * 2685821657736338717L;
+        }
+
+        long sparse() {
+            return next() & next() & next();
+        }
+    }
+}
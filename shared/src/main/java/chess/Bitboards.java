@@ -0,0 +1,55 @@
+package chess;
+
+/**
+ * Helpers for the 64-bit square masks that back {@link ChessBoard}.
+ * <p>
+ * Squares are numbered 0-63 starting at row 1, column 1 (a1) and moving
+ * across each row, so square = (row - 1) * 8 + (column - 1).
+ */
+final class Bitboards {
+
+    static final int PIECE_KINDS = 12; // 6 piece types for each of the 2 teams
+
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_8 = RANK_1 << 56;
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_H = FILE_A << 7;
+
+    private Bitboards() {
+    }
+
+    static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    static boolean onBoard(int row, int col) {
+        return row >= 1 && row <= 8 && col >= 1 && col <= 8;
+    }
+
+    static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * @return index into the per-piece bitboards, white pieces first in {@link ChessPiece.PieceType} order
+     */
+    static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    static int pieceIndex(ChessPiece piece) {
+        return pieceIndex(piece.getTeamColor(), piece.getPieceType());
+    }
+}
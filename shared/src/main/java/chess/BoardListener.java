@@ -0,0 +1,17 @@
+package chess;
+
+/**
+ * Told about every piece added to or removed from a {@link ChessBoard}, including the
+ * ones moved while making and unmaking moves. An evaluator can use this to keep its own
+ * per-position state up to date instead of rebuilding it from the board each time.
+ * Attach one with {@link ChessBoard#setListener}.
+ */
+public interface BoardListener {
+
+    /**
+     * @param square 0 (a1) to 63 (h8), rank by rank
+     */
+    void pieceAdded(ChessPiece piece, int square);
+
+    void pieceRemoved(ChessPiece piece, int square);
+}
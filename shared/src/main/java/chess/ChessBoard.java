@@ -1,21 +1,76 @@
 package chess;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.*;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
  * <p>
+ * Pieces are tracked twice: the 8x8 array is what gets serialized and answers
+ * {@link #getPiece}, while one 64-bit mask per piece kind (plus per-team and total
+ * occupancy) lets the engine answer "what is where" with bit operations.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessBoard.BitboardRebuilder.class)
 public class ChessBoard {
 
-    final private ChessPiece[][] board = new ChessPiece[8][8];
+    /** {@link #getPhase} with every queen, rook and minor piece on the board */
+    public static final int MAX_PHASE = 24;
+
+    // indexed by PieceType ordinal: king, queen, bishop, knight, rook, pawn
+    private static final int[] EXCHANGE_VALUES = {10_000, 900, 330, 320, 500, 100};
+    // capturers are tried cheapest first
+    private static final ChessPiece.PieceType[] EXCHANGE_ORDER = {
+            ChessPiece.PieceType.PAWN, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING};
+
+    private ChessPiece[][] board = new ChessPiece[8][8];
+
+    // derived from board, so they're left out of the json and rebuilt on load
+    private transient long[] pieceBitboards = new long[Bitboards.PIECE_KINDS];
+    private transient long[] teamBitboards = new long[2];
+    private transient long occupied;
+    private transient long zobristKey;
+    private transient long pawnKey;
+
+    // each team's running material and piece-square totals, see PieceSquareTables
+    private transient int[] midgameScores = new int[2];
+    private transient int[] endgameScores = new int[2];
+    private transient int phase;
+
+    // each team's occupied squares in no particular order, with each square's slot in its list
+    private transient int[][] pieceSquares = new int[2][64];
+    private transient int[] pieceCounts = new int[2];
+    private transient int[] listSlots = new int[64];
+    private transient int[] kingSquares = {ChessGame.NO_SQUARE, ChessGame.NO_SQUARE};
+
+    private transient BoardListener listener;
+    private transient int[] exchangeGains = new int[32]; // scratch space for staticExchange
 
     public ChessBoard() {
 
     }
 
+    /**
+     * Copies another board, so the copy can be changed without touching the original
+     */
+    public ChessBoard(ChessBoard other) {
+        for (int row = 0; row < 8; row++) {
+            board[row] = other.board[row].clone();
+        }
+        rebuildBitboards();
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
@@ -23,12 +78,16 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        board[position.getRow() - 1][position.getColumn() - 1] = piece;
+        int square = Bitboards.square(position);
+        clearSquare(square);
+        if (piece != null) {
+            placePiece(square, piece);
+        }
     }
 
 
     public void removePiece(ChessPosition position) {
-        board[position.getRow() - 1][position.getColumn() - 1] = null;
+        clearSquare(Bitboards.square(position));
     }
 
     /**
@@ -47,26 +106,295 @@ public class ChessBoard {
         return board[row - 1][col - 1];
     }
 
+    /**
+     * @return mask of the squares holding the given team's pieces of the given type
+     */
+    public long getBitboard(ChessGame.TeamColor teamColor, ChessPiece.PieceType type) {
+        return pieceBitboards[Bitboards.pieceIndex(teamColor, type)];
+    }
+
+    /**
+     * @return mask of the squares holding any of the given team's pieces
+     */
+    public long getTeamBitboard(ChessGame.TeamColor teamColor) {
+        return teamBitboards[teamColor.ordinal()];
+    }
+
+    /**
+     * @return mask of every occupied square
+     */
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * @return mask of the given team's pieces that attack square, treating only the squares
+     * in occupied as blockers
+     */
+    long attackers(int square, ChessGame.TeamColor byTeam, long occupied) {
+        int base = Bitboards.pieceIndex(byTeam, ChessPiece.PieceType.KING);
+        long queens = pieceBitboards[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        long diagonals = queens | pieceBitboards[base + ChessPiece.PieceType.BISHOP.ordinal()];
+        long straights = queens | pieceBitboards[base + ChessPiece.PieceType.ROOK.ordinal()];
+        // a pawn of ours would capture onto exactly the squares an enemy pawn attacks us from
+        int defender = 1 - byTeam.ordinal();
+        return (Attacks.PAWN[defender][square] & pieceBitboards[base + ChessPiece.PieceType.PAWN.ordinal()])
+                | (Attacks.KNIGHT[square] & pieceBitboards[base + ChessPiece.PieceType.KNIGHT.ordinal()])
+                | (Attacks.KING[square] & pieceBitboards[base])
+                | (Attacks.bishop(square, occupied) & diagonals)
+                | (Attacks.rook(square, occupied) & straights);
+    }
+
+    boolean isAttacked(int square, ChessGame.TeamColor byTeam) {
+        return attackers(square, byTeam, occupied) != 0;
+    }
+
+    /**
+     * Static exchange evaluation of a move: how much material its side wins or loses
+     * (negative) on the target square if both sides keep recapturing there with their
+     * least valuable piece, each stopping once recapturing would only lose more.
+     * Pieces lined up behind the capturers join in as the square opens up. Nothing is
+     * moved on the board, and pins and checks elsewhere are ignored.
+     *
+     * @return the material balance in centipawns, from the moving side's point of view
+     */
+    public int staticExchange(ChessMove move) {
+        return staticExchange(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece());
+    }
+
+    /**
+     * @param promotion what a pawn reaching the last rank becomes, or null
+     * @see #staticExchange(ChessMove)
+     */
+    public int staticExchange(int from, int to, ChessPiece.PieceType promotion) {
+        var mover = pieceAt(from);
+        var victim = pieceAt(to);
+        long remaining = occupied & ~Bitboards.bit(from);
+        int[] gains = exchangeGains;
+        gains[0] = victim == null ? 0 : EXCHANGE_VALUES[victim.getPieceType().ordinal()];
+        int onSquare = EXCHANGE_VALUES[mover.getPieceType().ordinal()];
+        if (mover.getPieceType() == ChessPiece.PieceType.PAWN) {
+            if (victim == null && (from & 7) != (to & 7)) {
+                // en passant: the captured pawn is beside the mover, not on the target square
+                remaining &= ~Bitboards.bit((from & ~7) | (to & 7));
+                gains[0] = EXCHANGE_VALUES[ChessPiece.PieceType.PAWN.ordinal()];
+            }
+            if (promotion != null) {
+                onSquare = EXCHANGE_VALUES[promotion.ordinal()];
+                gains[0] += onSquare - EXCHANGE_VALUES[ChessPiece.PieceType.PAWN.ordinal()];
+            }
+        }
+
+        var side = ChessGame.opponent(mover.getTeamColor());
+        int depth = 0;
+        while (depth < gains.length - 1) {
+            // attackers() sees through pieces already taken off remaining, which picks up x-rays
+            long attackers = attackers(to, side, remaining) & remaining;
+            if (attackers == 0) {
+                break;
+            }
+            int base = Bitboards.pieceIndex(side, ChessPiece.PieceType.KING);
+            ChessPiece.PieceType capturer = null;
+            long capturerBit = 0L;
+            for (var type : EXCHANGE_ORDER) {
+                long pieces = attackers & pieceBitboards[base + type.ordinal()];
+                if (pieces != 0) {
+                    capturer = type;
+                    capturerBit = pieces & -pieces;
+                    break;
+                }
+            }
+            if (capturer == ChessPiece.PieceType.KING
+                    && (attackers(to, ChessGame.opponent(side), remaining) & remaining) != 0) {
+                break; // the king can't capture onto a defended square
+            }
+            depth++;
+            gains[depth] = onSquare - gains[depth - 1];
+            remaining &= ~capturerBit;
+            onSquare = EXCHANGE_VALUES[capturer.ordinal()];
+            side = ChessGame.opponent(side);
+        }
+        // each side may decline to recapture, so work back from the end of the sequence
+        for (; depth > 0; depth--) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+        }
+        return gains[0];
+    }
+
+    /**
+     * @return hash of the pieces on the board, updated as pieces are added and removed.
+     * Equal boards always have equal keys.
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * @return hash of just the pawns, for caching pawn structure scores
+     */
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * @return the team's material plus middlegame piece-square scores, in centipawns
+     */
+    public int getMidgameScore(ChessGame.TeamColor teamColor) {
+        return midgameScores[teamColor.ordinal()];
+    }
+
+    /**
+     * @return the team's material plus endgame piece-square scores, in centipawns
+     */
+    public int getEndgameScore(ChessGame.TeamColor teamColor) {
+        return endgameScores[teamColor.ordinal()];
+    }
+
+    /**
+     * @return how far the game is from an endgame, from {@link #MAX_PHASE} (or more, after
+     * promotions) down to 0 once only kings and pawns are left
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Reports every later change to the pieces on this board to listener, replacing any
+     * listener set before. Copies of the board don't keep it.
+     *
+     * @param listener null to stop reporting
+     */
+    public void setListener(BoardListener listener) {
+        this.listener = listener;
+    }
+
+    int pieceCount(ChessGame.TeamColor teamColor) {
+        return pieceCounts[teamColor.ordinal()];
+    }
+
+    /**
+     * @return square of the team's i-th piece, for 0 <= i < pieceCount(teamColor)
+     */
+    int pieceSquare(ChessGame.TeamColor teamColor, int i) {
+        return pieceSquares[teamColor.ordinal()][i];
+    }
+
+    /**
+     * @return square of the team's king, or ChessGame.NO_SQUARE if it has none
+     */
+    int kingSquare(ChessGame.TeamColor teamColor) {
+        return kingSquares[teamColor.ordinal()];
+    }
+
+    /**
+     * @return the piece on a square numbered 0 (a1) to 63 (h8), rank by rank, or null
+     */
+    public ChessPiece pieceAt(int square) {
+        return board[square >>> 3][square & 7];
+    }
+
+    void placePiece(int square, ChessPiece piece) {
+        long bit = Bitboards.bit(square);
+        int pieceIndex = Bitboards.pieceIndex(piece);
+        int team = piece.getTeamColor().ordinal();
+        board[square >>> 3][square & 7] = piece;
+        pieceBitboards[pieceIndex] |= bit;
+        teamBitboards[team] |= bit;
+        occupied |= bit;
+        zobristKey ^= Zobrist.PIECE_SQUARE[pieceIndex][square];
+        midgameScores[team] += PieceSquareTables.MIDGAME[pieceIndex][square];
+        endgameScores[team] += PieceSquareTables.ENDGAME[pieceIndex][square];
+        phase += PieceSquareTables.PHASE[piece.getPieceType().ordinal()];
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            pawnKey ^= Zobrist.PIECE_SQUARE[pieceIndex][square];
+        }
+
+        listSlots[square] = pieceCounts[team];
+        pieceSquares[team][pieceCounts[team]++] = square;
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            kingSquares[team] = square;
+        }
+        if (listener != null) {
+            listener.pieceAdded(piece, square);
+        }
+    }
+
+    void clearSquare(int square) {
+        var piece = board[square >>> 3][square & 7];
+        if (piece == null) {
+            return;
+        }
+        long bit = Bitboards.bit(square);
+        int pieceIndex = Bitboards.pieceIndex(piece);
+        int team = piece.getTeamColor().ordinal();
+        board[square >>> 3][square & 7] = null;
+        pieceBitboards[pieceIndex] &= ~bit;
+        teamBitboards[team] &= ~bit;
+        occupied &= ~bit;
+        zobristKey ^= Zobrist.PIECE_SQUARE[pieceIndex][square];
+        midgameScores[team] -= PieceSquareTables.MIDGAME[pieceIndex][square];
+        endgameScores[team] -= PieceSquareTables.ENDGAME[pieceIndex][square];
+        phase -= PieceSquareTables.PHASE[piece.getPieceType().ordinal()];
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            pawnKey ^= Zobrist.PIECE_SQUARE[pieceIndex][square];
+        }
+
+        // move the team's last piece into the freed slot
+        int last = pieceSquares[team][--pieceCounts[team]];
+        pieceSquares[team][listSlots[square]] = last;
+        listSlots[last] = listSlots[square];
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            long kings = pieceBitboards[pieceIndex];
+            kingSquares[team] = kings == 0 ? ChessGame.NO_SQUARE : Long.numberOfTrailingZeros(kings);
+        }
+        if (listener != null) {
+            listener.pieceRemoved(piece, square);
+        }
+    }
+
+    private void rebuildBitboards() {
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(teamBitboards, 0L);
+        occupied = 0L;
+        zobristKey = 0L;
+        pawnKey = 0L;
+        Arrays.fill(midgameScores, 0);
+        Arrays.fill(endgameScores, 0);
+        phase = 0;
+        Arrays.fill(pieceCounts, 0);
+        Arrays.fill(kingSquares, ChessGame.NO_SQUARE);
+        for (int square = 0; square < 64; square++) {
+            var piece = pieceAt(square);
+            if (piece != null) {
+                placePiece(square, piece);
+            }
+        }
+    }
+
     /**
      * Sets the board to the default starting board
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
+        for (int square = 0; square < 64; square++) {
+            clearSquare(square);
+        }
         for (int i = 1; i <= 8; i++) {
-            addPiece(new ChessPosition(2, i), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-            addPiece(new ChessPosition(7, i), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(2, i), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, i), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
         }
         var teams = List.of(ChessGame.TeamColor.WHITE, ChessGame.TeamColor.BLACK);
         for (ChessGame.TeamColor team : teams) {
             int row = (team == ChessGame.TeamColor.WHITE ? 1 : 8);
-            addPiece(new ChessPosition(row, 1), new ChessPiece(team, ChessPiece.PieceType.ROOK));
-            addPiece(new ChessPosition(row, 2), new ChessPiece(team, ChessPiece.PieceType.KNIGHT));
-            addPiece(new ChessPosition(row, 3), new ChessPiece(team, ChessPiece.PieceType.BISHOP));
-            addPiece(new ChessPosition(row, 4), new ChessPiece(team, ChessPiece.PieceType.QUEEN));
-            addPiece(new ChessPosition(row, 5), new ChessPiece(team, ChessPiece.PieceType.KING));
-            addPiece(new ChessPosition(row, 6), new ChessPiece(team, ChessPiece.PieceType.BISHOP));
-            addPiece(new ChessPosition(row, 7), new ChessPiece(team, ChessPiece.PieceType.KNIGHT));
-            addPiece(new ChessPosition(row, 8), new ChessPiece(team, ChessPiece.PieceType.ROOK));
+            addPiece(ChessPosition.of(row, 1), ChessPiece.of(team, ChessPiece.PieceType.ROOK));
+            addPiece(ChessPosition.of(row, 2), ChessPiece.of(team, ChessPiece.PieceType.KNIGHT));
+            addPiece(ChessPosition.of(row, 3), ChessPiece.of(team, ChessPiece.PieceType.BISHOP));
+            addPiece(ChessPosition.of(row, 4), ChessPiece.of(team, ChessPiece.PieceType.QUEEN));
+            addPiece(ChessPosition.of(row, 5), ChessPiece.of(team, ChessPiece.PieceType.KING));
+            addPiece(ChessPosition.of(row, 6), ChessPiece.of(team, ChessPiece.PieceType.BISHOP));
+            addPiece(ChessPosition.of(row, 7), ChessPiece.of(team, ChessPiece.PieceType.KNIGHT));
+            addPiece(ChessPosition.of(row, 8), ChessPiece.of(team, ChessPiece.PieceType.ROOK));
         }
     }
 
@@ -76,12 +404,12 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(board, that.board);
+        return zobristKey == that.zobristKey && Arrays.equals(pieceBitboards, that.pieceBitboards);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(board);
+        return Long.hashCode(zobristKey);
     }
 
     @Override
@@ -111,4 +439,31 @@ public class ChessBoard {
         }
         return boardString.toString();
     }
+
+
+    /**
+     * Gson writes the piece array straight into the field, so the bitboards have to be
+     * rebuilt from it after a board is read back in
+     */
+    static class BitboardRebuilder implements TypeAdapterFactory {
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+            return new TypeAdapter<>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    delegate.write(out, value);
+                }
+
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    T value = delegate.read(in);
+                    if (value instanceof ChessBoard chessBoard) {
+                        chessBoard.rebuildBitboards();
+                    }
+                    return value;
+                }
+            };
+        }
+    }
 }
@@ -1,9 +1,7 @@
 package chess;
 
-import javax.swing.*;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -13,15 +11,131 @@ import java.util.Objects;
  * signature of the existing methods.
  */
 public class ChessGame {
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 2;
+    static final int BLACK_KINGSIDE = 4;
+    static final int BLACK_QUEENSIDE = 8;
+    static final int ALL_CASTLING = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+    static final int NO_SQUARE = 64;
+
+    // castling rights that survive a move touching each square (king or rook leaving, rook captured)
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_KEPT, ALL_CASTLING);
+        CASTLING_KEPT[Bitboards.square(1, 5)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_KEPT[Bitboards.square(1, 8)] &= ~WHITE_KINGSIDE;
+        CASTLING_KEPT[Bitboards.square(1, 1)] &= ~WHITE_QUEENSIDE;
+        CASTLING_KEPT[Bitboards.square(8, 5)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_KEPT[Bitboards.square(8, 8)] &= ~BLACK_KINGSIDE;
+        CASTLING_KEPT[Bitboards.square(8, 1)] &= ~BLACK_QUEENSIDE;
+    }
+
+    // undo records are packed into a long: packed move | captured piece | castling | en passant | turn | halfmove clock
+    private static final int CAPTURED_SHIFT = 16;
+    private static final int CASTLING_SHIFT = 20;
+    private static final int EN_PASSANT_SHIFT = 24;
+    private static final int TURN_SHIFT = 31;
+    private static final int HALFMOVE_SHIFT = 32;
+
+    private static final int FIFTY_MOVES = 100; // in plies
+    private static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
     ChessBoard board;
     ChessGame.TeamColor currentTurn = TeamColor.WHITE;
     boolean isGameOver = false;
+    int castlingRights = ALL_CASTLING;
+    int enPassantSquare = NO_SQUARE; // square skipped by a pawn's two-step on the last move
+
+    private transient long[] undoStack = new long[256];
+    private transient int undoCount = 0;
+    // every move played since the game started, as 16-bit PackedMoves, oldest first
+    transient short[] history = new short[256];
+    transient int historyCount = 0;
+    // the position's key before each move of the history, for spotting repetitions
+    transient long[] keyHistory = new long[256];
+    // plies since the last capture or pawn move
+    transient int halfmoveClock = 0;
+    // plies played before the history starts, nonzero for a game set up from a FEN string
+    transient int startingPly = 0;
+
+    // every legal move for legalMovesTeam in the position hashed to legalMovesKey, built on first use
+    private transient MoveList legalMoves = new MoveList();
+    private transient TeamColor legalMovesTeam; // null when nothing is cached
+    private transient long legalMovesKey;
+    private transient LegalMoveCache moveCache; // shared with other games, or null
 
     public ChessGame() {
         board = new ChessBoard();
         board.resetBoard(); //creating a game object will start with a default board
     }
 
+    /**
+     * Replays a game from the starting position
+     *
+     * @param moves the game's moves, as {@link #getMoveHistory()} gives them
+     * @throws IllegalArgumentException if a move isn't legal where it's played
+     */
+    public ChessGame(short[] moves) {
+        this();
+        var legal = new MoveList();
+        for (int ply = 0; ply < moves.length; ply++) {
+            int move = moves[ply] & 0xFFFF;
+            generateMoves(legal);
+            boolean found = false;
+            for (int i = 0; i < legal.size() && !found; i++) {
+                found = legal.get(i) == move;
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Move " + (ply + 1) + " of the game isn't legal: "
+                        + PackedMove.toChessMove(move));
+            }
+            doMove(move);
+        }
+    }
+
+    /**
+     * Starts a game from a position with no history, the way {@link #setBoard} does
+     */
+    ChessGame(ChessBoard board, TeamColor turn) {
+        this.board = board;
+        currentTurn = turn;
+        castlingRights = castlingRightsFromBoard();
+    }
+
+    /**
+     * Reads a position in Forsyth-Edwards Notation. The move counters may be left off.
+     *
+     * @throws IllegalArgumentException if fen isn't a well-formed FEN string
+     */
+    public static ChessGame fromFen(String fen) {
+        return Fen.parse(fen);
+    }
+
+    /**
+     * @return the position in Forsyth-Edwards Notation, the same string for the same position
+     */
+    public String toFen() {
+        return Fen.format(this);
+    }
+
+    /**
+     * Copies another game's position, turn, rights and move history, but not its undo
+     * history, so a search can play through the copy without touching the original
+     */
+    public ChessGame(ChessGame other) {
+        board = new ChessBoard(other.board);
+        currentTurn = other.currentTurn;
+        isGameOver = other.isGameOver;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        history = other.history.clone();
+        historyCount = other.historyCount;
+        keyHistory = other.keyHistory.clone();
+        halfmoveClock = other.halfmoveClock;
+        startingPly = other.startingPly;
+    }
+
 
     public void endGame() {
         isGameOver = true;
@@ -31,6 +145,29 @@ public class ChessGame {
         return isGameOver;
     }
 
+    /**
+     * @return plies since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return the number of the move being played, starting at 1 and going up after
+     * each black move
+     */
+    public int getFullmoveNumber() {
+        return (startingPly + historyCount) / 2 + 1;
+    }
+
+    /**
+     * @return the moves played since the game started, as 16-bit {@link PackedMove}s,
+     * oldest first. A game set up with {@link #setBoard} starts with none.
+     */
+    public short[] getMoveHistory() {
+        return Arrays.copyOf(history, historyCount);
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -44,6 +181,9 @@ public class ChessGame {
      * @param team the team whose turn it is
      */
     public void setTeamTurn(TeamColor team) {
+        if (team != currentTurn) {
+            enPassantSquare = NO_SQUARE; // the capture was only ever available to the other team
+        }
         currentTurn = team;
         //switches turn
     }
@@ -56,6 +196,16 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * Where a team stands when it's their turn to move
+     */
+    public enum GameStatus {
+        ONGOING,
+        CHECK,
+        CHECKMATE,
+        STALEMATE
+    }
+
     /**
      * Gets a valid moves (legal moves that do not leave the king in danger) for a piece at the given location
      *
@@ -64,24 +214,216 @@ public class ChessGame {
      * startPosition
      */
     public HashSet<ChessMove> validMoves(ChessPosition startPosition) {
-        if (board.getPiece(startPosition) == null) {
+        ChessPiece piece = board.getPiece(startPosition);
+        if (piece == null) {
             return null;
         }
-        ChessPiece piece = board.getPiece(startPosition);
-        Collection<ChessMove> possibleMoves = piece.pieceMoves(board, startPosition);
-        var validMoves = new HashSet<ChessMove>();
-        for (ChessMove possibleMove : possibleMoves) { // test move, add if safe
-            board.removePiece(startPosition);
-            var currPiece = board.getPiece(possibleMove.getEndPosition()); // test move might eliminate an enemy
-            board.addPiece(possibleMove.getEndPosition(), piece);
-            if (!isInCheck(piece.getTeamColor())) {
-                validMoves.add(possibleMove);
+        int square = Bitboards.square(startPosition);
+        var moves = legalMoves(piece.getTeamColor());
+        var chessMoves = new HashSet<ChessMove>();
+        for (int i = 0; i < moves.size(); i++) {
+            if (PackedMove.from(moves.get(i)) == square) {
+                chessMoves.add(PackedMove.toChessMove(moves.get(i)));
             }
-            board.removePiece(possibleMove.getEndPosition());
-            board.addPiece(possibleMove.getEndPosition(), currPiece);
-            board.addPiece(startPosition, piece);
         }
-        return validMoves;
+        return chessMoves;
+    }
+
+
+    /**
+     * Gets every valid move for one team
+     *
+     * @param teamColor the team to get valid moves for
+     * @return Set of valid moves for all of that team's pieces
+     */
+    public HashSet<ChessMove> validMoves(TeamColor teamColor) {
+        return toChessMoves(legalMoves(teamColor));
+    }
+
+
+    /**
+     * @return the team's legal moves in the current position. They're generated once and
+     * reused until the position changes; the cache is keyed by the position's hash, so it
+     * also notices pieces added or removed straight through the board. On a miss the
+     * shared move cache, if there is one, is tried before generating.
+     */
+    MoveList legalMoves(TeamColor teamColor) {
+        long key = getZobristKey();
+        if (teamColor != legalMovesTeam || key != legalMovesKey) {
+            long cacheKey = teamColor == currentTurn ? key : key ^ Zobrist.OFF_TURN;
+            if (moveCache == null || !moveCache.get(cacheKey, board.getOccupied(), legalMoves)) {
+                generateMoves(teamColor, -1L, legalMoves);
+                if (moveCache != null) {
+                    moveCache.put(cacheKey, board.getOccupied(), legalMoves);
+                }
+            }
+            legalMovesTeam = teamColor;
+            legalMovesKey = key;
+        }
+        return legalMoves;
+    }
+
+
+    /**
+     * Shares legal move lists with every other game using the same cache
+     *
+     * @param moveCache the cache to look positions up in, or null to always generate
+     */
+    public void setMoveCache(LegalMoveCache moveCache) {
+        this.moveCache = moveCache;
+    }
+
+
+    /**
+     * Fills moves with the legal moves of the team whose turn it is, as {@link PackedMove}
+     * ints. Unlike validMoves this skips every cache, and the caller owns the list, so a
+     * search can keep one list per ply.
+     */
+    public void generateMoves(MoveList moves) {
+        generateMoves(currentTurn, -1L, moves);
+    }
+
+
+    /**
+     * Fills moves with the team's legal moves from the squares in origins, as packed ints
+     */
+    void generateMoves(TeamColor teamColor, long origins, MoveList moves) {
+        moves.clear();
+        // en passant is only on the table for the team whose turn it is
+        int enPassant = teamColor == currentTurn ? enPassantSquare : NO_SQUARE;
+        MoveGenerator.generate(board, teamColor, castlingRights, enPassant, origins, moves);
+    }
+
+
+    private static HashSet<ChessMove> toChessMoves(MoveList moves) {
+        var chessMoves = new HashSet<ChessMove>(moves.size() * 2);
+        for (int i = 0; i < moves.size(); i++) {
+            chessMoves.add(PackedMove.toChessMove(moves.get(i)));
+        }
+        return chessMoves;
+    }
+
+
+    /**
+     * Plays a move on the board without checking that it is legal, remembering enough
+     * to take it back with {@link #undoMove()}. Handles captures, promotion, castling
+     * and en passant, and passes the turn to the other team.
+     *
+     * @param move a move from validMoves, or at least from pieceMoves
+     */
+    public void doMove(ChessMove move) {
+        int from = Bitboards.square(move.getStartPosition());
+        int to = Bitboards.square(move.getEndPosition());
+        var piece = board.pieceAt(from);
+        if (move.getPromotionPiece() != null) {
+            doMove(PackedMove.promotion(from, to, move.getPromotionPiece()));
+        } else if (piece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            doMove(PackedMove.of(from, to, PackedMove.CASTLING));
+        } else if (piece.getPieceType() == ChessPiece.PieceType.PAWN && (from & 7) != (to & 7)
+                && board.pieceAt(to) == null) {
+            doMove(PackedMove.of(from, to, PackedMove.EN_PASSANT)); // diagonal step onto an empty square
+        } else {
+            doMove(PackedMove.of(from, to, PackedMove.NORMAL));
+        }
+    }
+
+
+    /**
+     * Plays a {@link PackedMove} the way {@link #doMove(ChessMove)} does
+     *
+     * @param move a move produced by {@link #generateMoves(MoveList)}
+     */
+    public void doMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int kind = PackedMove.kind(move);
+        var piece = board.pieceAt(from);
+        var team = piece.getTeamColor();
+        int capturedSquare = kind != PackedMove.EN_PASSANT ? to : team == TeamColor.WHITE ? to - 8 : to + 8;
+        var captured = board.pieceAt(capturedSquare);
+
+        if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoCount * 2);
+        }
+        if (historyCount == history.length) {
+            history = Arrays.copyOf(history, historyCount * 2);
+            keyHistory = Arrays.copyOf(keyHistory, historyCount * 2);
+        }
+        keyHistory[historyCount] = getZobristKey();
+        history[historyCount++] = (short) move;
+        undoStack[undoCount++] = move
+                | ((long) (captured == null ? 0 : Bitboards.pieceIndex(captured) + 1) << CAPTURED_SHIFT)
+                | ((long) castlingRights << CASTLING_SHIFT)
+                | ((long) enPassantSquare << EN_PASSANT_SHIFT)
+                | ((long) currentTurn.ordinal() << TURN_SHIFT)
+                | ((long) halfmoveClock << HALFMOVE_SHIFT);
+        boolean irreversible = captured != null || piece.getPieceType() == ChessPiece.PieceType.PAWN;
+        halfmoveClock = irreversible ? 0 : halfmoveClock + 1;
+
+        board.clearSquare(capturedSquare);
+        board.clearSquare(from);
+        board.clearSquare(to);
+        if (kind == PackedMove.PROMOTION) {
+            piece = ChessPiece.fromIndex(Bitboards.pieceIndex(team, PackedMove.promotionType(move)));
+        }
+        board.placePiece(to, piece);
+        if (kind == PackedMove.CASTLING) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            var rook = board.pieceAt(rookFrom);
+            board.clearSquare(rookFrom);
+            board.placePiece(rookTo, rook);
+        }
+
+        castlingRights &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        boolean twoStep = piece.getPieceType() == ChessPiece.PieceType.PAWN && Math.abs(to - from) == 16;
+        enPassantSquare = twoStep ? (from + to) / 2 : NO_SQUARE;
+        currentTurn = opponent(team);
+        legalMovesTeam = null;
+    }
+
+
+    /**
+     * Takes back the most recent move played with {@link #doMove} or {@link #makeMove},
+     * restoring the board, turn, castling rights, en passant square and halfmove clock,
+     * and dropping it from the move history
+     */
+    public void undoMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to undo");
+        }
+        long record = undoStack[--undoCount];
+        historyCount--;
+        int move = (int) record & 0xFFFF;
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int kind = PackedMove.kind(move);
+        int captured = (int) (record >>> CAPTURED_SHIFT) & 15;
+
+        var piece = board.pieceAt(to);
+        var team = piece.getTeamColor();
+        if (kind == PackedMove.PROMOTION) {
+            piece = ChessPiece.fromIndex(Bitboards.pieceIndex(team, ChessPiece.PieceType.PAWN));
+        }
+        board.clearSquare(to);
+        board.placePiece(from, piece);
+        if (captured != 0) {
+            int capturedSquare = kind != PackedMove.EN_PASSANT ? to : team == TeamColor.WHITE ? to - 8 : to + 8;
+            board.placePiece(capturedSquare, ChessPiece.fromIndex(captured - 1));
+        }
+        if (kind == PackedMove.CASTLING) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            var rook = board.pieceAt(rookTo);
+            board.clearSquare(rookTo);
+            board.placePiece(rookFrom, rook);
+        }
+
+        castlingRights = (int) (record >>> CASTLING_SHIFT) & 15;
+        enPassantSquare = (int) (record >>> EN_PASSANT_SHIFT) & 127;
+        currentTurn = (record >>> TURN_SHIFT & 1) == 0 ? TeamColor.WHITE : TeamColor.BLACK;
+        halfmoveClock = (int) (record >>> HALFMOVE_SHIFT);
+        legalMovesTeam = null;
     }
 
 
@@ -93,22 +435,16 @@ public class ChessGame {
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
         ChessPosition startPosition = move.getStartPosition();
-        ChessPosition endPosition = move.getEndPosition();
         var piece = board.getPiece(startPosition);
         if (piece != null && piece.getTeamColor() != currentTurn) { // not your turn
             throw new InvalidMoveException("Not your turn");
         } else if (piece == null) { // no piece there
             throw new InvalidMoveException("No piece found");
         }
-        var validMoves = validMoves(startPosition);
-        for (ChessMove validMove : validMoves) {
-            if (validMove.equals(move)) { // if valid, make move
-                board.removePiece(startPosition);
-                board.addPiece(endPosition, piece);
-                if (piece.getPieceType() == ChessPiece.PieceType.PAWN && move.getPromotionPiece() != null) {
-                    board.addPiece(endPosition, new ChessPiece(piece.getTeamColor(), move.getPromotionPiece()));
-                }
-                setTeamTurn(piece.getTeamColor() == TeamColor.BLACK ? TeamColor.WHITE : TeamColor.BLACK);
+        var moves = legalMoves(currentTurn);
+        for (int i = 0; i < moves.size(); i++) {
+            if (PackedMove.matches(moves.get(i), move)) { // if valid, make move
+                doMove(moves.get(i));
                 return;
             }
         }
@@ -120,31 +456,28 @@ public class ChessGame {
     }
 
 
+    static TeamColor opponent(TeamColor team) {
+        return team == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
+
     public HashSet<ChessPosition> getTeamPositions(ChessGame.TeamColor myTeamColor) {
-        var teamPositions = new HashSet<ChessPosition>();
-        for (int i = 1; i < 9; i++) {
-            for (int j = 1; j < 9; j++) {
-                var piece = board.getPiece(new ChessPosition(i, j));
-                if (piece != null && piece.getTeamColor() == myTeamColor) {
-                    teamPositions.add(new ChessPosition(i, j));
-                }
-            }
+        int count = board.pieceCount(myTeamColor);
+        var teamPositions = new HashSet<ChessPosition>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int square = board.pieceSquare(myTeamColor, i);
+            teamPositions.add(ChessPosition.at(square));
         }
         return teamPositions;
     }
 
 
     public ChessPosition getKingPosition(ChessGame.TeamColor teamColor) {
-        for (int i = 1; i < 9; i++) {
-            for (int j = 1; j < 9; j++) {
-                var piece = board.getPiece(new ChessPosition(i, j));
-                if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING &&
-                        piece.getTeamColor() == teamColor) {
-                    return new ChessPosition(i, j);
-                }
-            }
+        int square = board.kingSquare(teamColor);
+        if (square == NO_SQUARE) {
+            return null;
         }
-        return null; // won't trigger since there's always a king
+        return ChessPosition.at(square);
     }
 
 
@@ -154,21 +487,8 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        // find king and also all enemy pieces
-        ChessPosition kingPosition = getKingPosition(teamColor);
-        TeamColor enemyColor = teamColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
-        HashSet<ChessPosition> enemyPositions = getTeamPositions(enemyColor);
-
-        for (ChessPosition enemyPosition : enemyPositions) {
-            var enemyPiece = board.getPiece(enemyPosition);
-            var enemyMoves = enemyPiece.pieceMoves(board, enemyPosition);
-            for (ChessMove enemyMove : enemyMoves) {
-                if (enemyMove.endPosition.equals(kingPosition)) {
-                    return true; // in check
-                }
-            }
-        }
-        return false; // not in check
+        int king = board.kingSquare(teamColor);
+        return king != NO_SQUARE && board.isAttacked(king, opponent(teamColor));
     }
 
 
@@ -179,26 +499,7 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
-        var allyPositions = getTeamPositions(teamColor);
-
-        for (ChessPosition allyPosition : allyPositions) {
-            var allyPiece = board.getPiece(allyPosition);
-            var allyMoves = allyPiece.pieceMoves(board, allyPosition);
-            for (ChessMove allyMove : allyMoves) {
-                var startPosition = allyMove.getStartPosition();
-                board.removePiece(startPosition);
-                var currPiece = board.getPiece(allyMove.getEndPosition()); // test move might eliminate an enemy
-                board.addPiece(allyMove.getEndPosition(), allyPiece);
-                if (!isInCheck(teamColor)) {
-                    board.addPiece(allyMove.getEndPosition(), currPiece);
-                    board.addPiece(startPosition, allyPiece);
-                    return false; // there exists a move where you aren't in check
-                }
-                board.addPiece(allyMove.getEndPosition(), currPiece);
-                board.addPiece(startPosition, allyPiece);
-            }
-        }
-        return true; // no move found that doesn't put you in check
+        return evaluateStatus(teamColor) == GameStatus.CHECKMATE;
     }
 
 
@@ -210,18 +511,111 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        if (isInCheck(teamColor)) {
-            return false; // no stalemate if in danger
+        return evaluateStatus(teamColor) == GameStatus.STALEMATE;
+    }
+
+
+    /**
+     * Works out check, checkmate and stalemate together, generating the team's moves
+     * only once
+     *
+     * @param teamColor which team to evaluate
+     * @return the team's status
+     */
+    public GameStatus evaluateStatus(TeamColor teamColor) {
+        boolean inCheck = isInCheck(teamColor);
+        if (legalMoves(teamColor).isEmpty()) {
+            return inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
         }
-        var allyPositions = getTeamPositions(teamColor);
+        return inCheck ? GameStatus.CHECK : GameStatus.ONGOING;
+    }
 
-        for (ChessPosition allyPosition : allyPositions) {
-            var allyMoves = validMoves(allyPosition);
-                if (!allyMoves.isEmpty()) {
-                    return false; // possible moves, no stalemate
-                }
+
+    /**
+     * The ways a game is drawn without a stalemate
+     */
+    public enum DrawReason {
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE,
+        INSUFFICIENT_MATERIAL
+    }
+
+
+    /**
+     * @return why the game is drawn in the current position, or null if it isn't. Doesn't
+     * look for checkmate, which takes precedence over the fifty-move rule.
+     */
+    public DrawReason getDrawReason() {
+        if (hasInsufficientMaterial()) {
+            return DrawReason.INSUFFICIENT_MATERIAL;
+        }
+        if (isFiftyMoveRule()) {
+            return DrawReason.FIFTY_MOVE_RULE;
+        }
+        if (isThreefoldRepetition()) {
+            return DrawReason.THREEFOLD_REPETITION;
+        }
+        return null;
+    }
+
+
+    /**
+     * @return true if the current position, with the same team to move and the same
+     * rights, came up twice before. Only looks back to the last capture or pawn move,
+     * since no earlier position can come back.
+     */
+    public boolean isThreefoldRepetition() {
+        return countRepetitions() >= 2;
+    }
+
+
+    /**
+     * @return how many times the current position, with the same team to move and the
+     * same rights, came up before, looking back no further than the last capture or pawn move
+     */
+    public int countRepetitions() {
+        long key = getZobristKey();
+        int oldest = historyCount - Math.min(halfmoveClock, historyCount);
+        int seen = 0;
+        for (int ply = historyCount - 2; ply >= oldest; ply -= 2) {
+            if (keyHistory[ply] == key) {
+                seen++;
+            }
         }
-        return true; // no moves, no danger = stalemate
+        return seen;
+    }
+
+
+    /**
+     * @return true if fifty moves each have gone by without a capture or pawn move
+     */
+    public boolean isFiftyMoveRule() {
+        return halfmoveClock >= FIFTY_MOVES;
+    }
+
+
+    /**
+     * @return true if neither team has the pieces left to checkmate: no pawns, rooks or
+     * queens, and at most one minor piece, or only bishops all on one color of square
+     */
+    public boolean hasInsufficientMaterial() {
+        long heavy = 0L;
+        long knights = 0L;
+        long bishops = 0L;
+        for (var team : TeamColor.values()) {
+            heavy |= board.getBitboard(team, ChessPiece.PieceType.PAWN)
+                    | board.getBitboard(team, ChessPiece.PieceType.ROOK)
+                    | board.getBitboard(team, ChessPiece.PieceType.QUEEN);
+            knights |= board.getBitboard(team, ChessPiece.PieceType.KNIGHT);
+            bishops |= board.getBitboard(team, ChessPiece.PieceType.BISHOP);
+        }
+        if (heavy != 0L) {
+            return false;
+        }
+        if (Long.bitCount(knights | bishops) <= 1) {
+            return true;
+        }
+        return knights == 0L && ((bishops & LIGHT_SQUARES) == 0L || (bishops & ~LIGHT_SQUARES) == 0L);
     }
 
 
@@ -232,6 +626,36 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        castlingRights = castlingRightsFromBoard();
+        enPassantSquare = NO_SQUARE;
+        undoCount = 0;
+        historyCount = 0;
+        halfmoveClock = 0;
+        startingPly = 0;
+    }
+
+
+    /**
+     * A board handed to us has no history, so assume any king and rook still on their
+     * starting squares haven't moved
+     */
+    int castlingRightsFromBoard() {
+        int rights = 0;
+        for (var team : TeamColor.values()) {
+            int row = team == TeamColor.WHITE ? 1 : 8;
+            var king = ChessPiece.of(team, ChessPiece.PieceType.KING);
+            var rook = ChessPiece.of(team, ChessPiece.PieceType.ROOK);
+            if (!king.equals(board.getPiece(ChessPosition.of(row, 5)))) {
+                continue;
+            }
+            if (rook.equals(board.getPiece(ChessPosition.of(row, 8)))) {
+                rights |= team == TeamColor.WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+            }
+            if (rook.equals(board.getPiece(ChessPosition.of(row, 1)))) {
+                rights |= team == TeamColor.WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+            }
+        }
+        return rights;
     }
 
 
@@ -245,19 +669,59 @@ public class ChessGame {
     }
 
 
+    /**
+     * @return hash of the whole position: the board, the team to move, castling rights and
+     * any en passant capture. Kept up to date as moves are made, so this costs a few XORs.
+     */
+    public long getZobristKey() {
+        long key = board.getZobristKey() ^ Zobrist.CASTLING[castlingRights];
+        if (currentTurn == TeamColor.BLACK) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        int enPassant = capturableEnPassantSquare();
+        if (enPassant != NO_SQUARE) {
+            key ^= Zobrist.EN_PASSANT_FILE[enPassant & 7];
+        }
+        return key;
+    }
+
+
+    /**
+     * @return the position's key in the Polyglot opening book format, which unlike
+     * {@link #getZobristKey()} is the same in every program that reads Polyglot books.
+     * Computed from scratch, so it's meant for book lookups rather than search.
+     */
+    public long getPolyglotKey() {
+        return Polyglot.key(this);
+    }
+
+
+    /**
+     * @return the en passant square if a pawn can actually take there, or NO_SQUARE
+     */
+    int capturableEnPassantSquare() {
+        if (enPassantSquare != NO_SQUARE && (Attacks.PAWN[opponent(currentTurn).ordinal()][enPassantSquare]
+                & board.getBitboard(currentTurn, ChessPiece.PieceType.PAWN)) != 0) {
+            return enPassantSquare;
+        }
+        return NO_SQUARE;
+    }
+
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
         ChessGame chessGame = (ChessGame) o;
-        return isGameOver == chessGame.isGameOver && Objects.equals(board, chessGame.board)
-                && currentTurn.equals(chessGame.currentTurn);
+        return isGameOver == chessGame.isGameOver && currentTurn == chessGame.currentTurn
+                && Objects.equals(board, chessGame.board);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(board, currentTurn, isGameOver);
+        long key = board.getZobristKey() ^ (currentTurn == TeamColor.BLACK ? Zobrist.BLACK_TO_MOVE : 0L);
+        return 31 * Long.hashCode(key) + (isGameOver ? 1 : 0);
     }
 
     @Override
@@ -1,6 +1,5 @@
 package chess;
 
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -41,27 +40,6 @@ public class ChessMove {
         return promotionPiece;
     }
 
-    public static int isLegal(ChessBoard board, ChessPosition endPosition, ChessGame.TeamColor pieceColor) {
-        if (outOfBounds(endPosition)) {
-            return 1; // completely out of bounds
-        }
-        else if (board.getPiece(endPosition) == null) {
-            return 2; // available space
-        }
-        else if (board.getPiece(endPosition) != null && board.getPiece(endPosition).getTeamColor() != pieceColor) {
-            return 3; // enemy occupied
-        }
-        else {
-            return 4; // teammate occupied
-        }
-    }
-
-    public static boolean outOfBounds(ChessPosition endPosition) {
-        int row = endPosition.getRow();
-        int col = endPosition.getColumn();
-        return row < 1 || row > 8 || col < 1 || col > 8;
-    }
-
     @Override
     public String toString() {
         String startString = toLetter(startPosition.getColumn()) + startPosition.getRow();
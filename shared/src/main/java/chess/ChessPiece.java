@@ -1,5 +1,11 @@
 package chess;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -8,17 +14,41 @@ import java.util.*;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessPiece.Adapter.class)
 public class ChessPiece {
 
     private final ChessGame.TeamColor pieceColor;
     private final ChessPiece.PieceType type;
 
+    // one shared instance per piece kind, indexed like the board's bitboards
+    private static final ChessPiece[] PIECES = new ChessPiece[Bitboards.PIECE_KINDS];
+
+    static {
+        for (var color : ChessGame.TeamColor.values()) {
+            for (var type : PieceType.values()) {
+                PIECES[Bitboards.pieceIndex(color, type)] = new ChessPiece(color, type);
+            }
+        }
+    }
+
 
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
         this.pieceColor = pieceColor;
         this.type = type;
     }
 
+    /**
+     * @return the shared instance of this kind of piece. Pieces are immutable, so one
+     * of each is all a board ever needs.
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        return PIECES[Bitboards.pieceIndex(pieceColor, type)];
+    }
+
+    static ChessPiece fromIndex(int pieceIndex) {
+        return PIECES[pieceIndex];
+    }
+
     /**
      * The various different chess piece options
      */
@@ -47,6 +77,9 @@ public class ChessPiece {
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj == null || getClass() != obj.getClass()) {
             return false;
         }
@@ -65,81 +98,6 @@ public class ChessPiece {
         return String.format("%s %s", pieceColor, type);
     }
 
-    public HashSet<ChessPosition> getEndPositions(boolean recursion,
-                                                  ChessBoard board,
-                                                  ChessPosition myPosition,
-                                                  HashSet<ChessPosition>
-                                                          directions) {
-        var endPositions = new HashSet<ChessPosition>();
-        if (recursion) {
-            for (ChessPosition direction : directions) {
-                for (int i = 1; i <= 8; i++) {
-                    var endPosition = new ChessPosition(
-                            myPosition.getRow() + (i * direction.getRow()),
-                            myPosition.getColumn() + (i * direction.getColumn()));
-                    var legality = ChessMove.isLegal(board, endPosition, pieceColor);
-                    if (legality == 2) { // available spot
-                        endPositions.add(endPosition);
-                    }
-                    else if (legality == 3) { // enemy occupied, but don't recurse further
-                        endPositions.add(endPosition);
-                        break;
-                    }
-                    else { // path blocked by edge or teammate
-                        break;
-                    }
-                }
-            }
-        }
-        else { // no recursion
-            for (ChessPosition direction : directions) {
-                var endPosition = new ChessPosition(
-                        myPosition.getRow() + direction.getRow(),
-                        myPosition.getColumn() + direction.getColumn());
-                var legality = ChessMove.isLegal(board, endPosition, pieceColor);
-                if (legality == 2 || legality == 3) { // available or enemy capture
-                    endPositions.add(endPosition);
-                }
-            }
-        }
-
-        return endPositions;
-    }
-
-    public HashSet<ChessPosition> getPawnEndPositions(ChessBoard board, ChessPosition myPosition) {
-        var endPositions = new HashSet<ChessPosition>();
-        if (pieceColor == ChessGame.TeamColor.WHITE) {
-            var forward = new ChessPosition(myPosition.getRow() + 1, myPosition.getColumn());
-            if (board.getPiece(forward) == null) {endPositions.add(forward);}
-            var twiceForward = new ChessPosition(myPosition.getRow() + 2, myPosition.getColumn());
-            if (myPosition.getRow() == 2 && board.getPiece(twiceForward) == null && board.getPiece(forward) == null) {
-                endPositions.add(twiceForward);
-            }
-            var leftDiagonal = new ChessPosition(myPosition.getRow() + 1, myPosition.getColumn()-1);
-            var rightDiagonal = new ChessPosition(myPosition.getRow() + 1, myPosition.getColumn()+1);
-            if (!ChessMove.outOfBounds(leftDiagonal) && board.getPiece(leftDiagonal) != null
-                    && board.getPiece(leftDiagonal).getTeamColor() != pieceColor) {endPositions.add(leftDiagonal);}
-            if (!ChessMove.outOfBounds(rightDiagonal) && board.getPiece(rightDiagonal) != null
-                    && board.getPiece(rightDiagonal).getTeamColor() != pieceColor) {endPositions.add(rightDiagonal);}
-        }
-        if (pieceColor == ChessGame.TeamColor.BLACK) {
-            var downward = new ChessPosition(myPosition.getRow() - 1, myPosition.getColumn());
-            if (board.getPiece(downward) == null) {endPositions.add(downward);}
-            var twiceDownward = new ChessPosition(myPosition.getRow() - 2, myPosition.getColumn());
-            if (myPosition.getRow() == 7 && board.getPiece(twiceDownward) == null && board.getPiece(downward) == null) {
-                endPositions.add(twiceDownward);
-            }
-            var leftDiagonal = new ChessPosition(myPosition.getRow() - 1, myPosition.getColumn()-1);
-            var rightDiagonal = new ChessPosition(myPosition.getRow() - 1, myPosition.getColumn()+1);
-            if (!ChessMove.outOfBounds(leftDiagonal) && board.getPiece(leftDiagonal) != null
-                    && board.getPiece(leftDiagonal).getTeamColor() != pieceColor) {endPositions.add(leftDiagonal);}
-            if (!ChessMove.outOfBounds(rightDiagonal) && board.getPiece(rightDiagonal) != null
-                    && board.getPiece(rightDiagonal).getTeamColor() != pieceColor) {endPositions.add(rightDiagonal);}
-        }
-        return endPositions;
-    }
-
-
     /**
      * Calculates all the positions a chess piece can move to
      * Does not take into account moves that are illegal due to leaving the king in
@@ -148,75 +106,76 @@ public class ChessPiece {
      */
     public HashSet<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
         var moves = new HashSet<ChessMove>();
-        var directions = new HashSet<ChessPosition>();
-        var endPositions = new HashSet<ChessPosition>();
-        if (board.getPiece(myPosition).getPieceType() == PieceType.BISHOP) {
-            directions.add(new ChessPosition(1,1));
-            directions.add(new ChessPosition(1,-1));
-            directions.add(new ChessPosition(-1,1));
-            directions.add(new ChessPosition(-1,-1));
-            endPositions = getEndPositions(true, board, myPosition, directions);
-        }
-        if (board.getPiece(myPosition).getPieceType() == PieceType.ROOK) {
-            directions.add(new ChessPosition(1,0));
-            directions.add(new ChessPosition(0,-1));
-            directions.add(new ChessPosition(-1,0));
-            directions.add(new ChessPosition(0,1));
-            endPositions = getEndPositions(true, board, myPosition, directions);
+        var piece = board.getPiece(myPosition);
+        var team = piece.getTeamColor();
+        int square = Bitboards.square(myPosition);
+        long occupied = board.getOccupied();
+        long own = board.getTeamBitboard(team);
+
+        if (piece.getPieceType() != PieceType.PAWN) {
+            long targets = Attacks.of(piece.getPieceType(), team, square, occupied) & ~own;
+            addMoves(moves, myPosition, targets, false);
+            return moves;
         }
-        if (board.getPiece(myPosition).getPieceType() == PieceType.QUEEN) {
-            directions.add(new ChessPosition(1,1));
-            directions.add(new ChessPosition(1,-1));
-            directions.add(new ChessPosition(-1,1));
-            directions.add(new ChessPosition(-1,-1));
-            directions.add(new ChessPosition(1,0));
-            directions.add(new ChessPosition(0,-1));
-            directions.add(new ChessPosition(-1,0));
-            directions.add(new ChessPosition(0,1));
-            endPositions = getEndPositions(true, board, myPosition, directions);
+
+        long enemies = occupied & ~own;
+        long start = Bitboards.bit(square);
+        long targets = Attacks.PAWN[team.ordinal()][square] & enemies;
+        if (team == ChessGame.TeamColor.WHITE) {
+            long forward = (start << 8) & ~occupied;
+            long twiceForward = ((forward & (Bitboards.RANK_1 << 16)) << 8) & ~occupied;
+            targets |= forward | twiceForward;
+        } else {
+            long downward = (start >>> 8) & ~occupied;
+            long twiceDownward = ((downward & (Bitboards.RANK_8 >>> 16)) >>> 8) & ~occupied;
+            targets |= downward | twiceDownward;
         }
-        if (board.getPiece(myPosition).getPieceType() == PieceType.KING) {
-            directions.add(new ChessPosition(1,1));
-            directions.add(new ChessPosition(1,-1));
-            directions.add(new ChessPosition(-1,1));
-            directions.add(new ChessPosition(-1,-1));
-            directions.add(new ChessPosition(1,0));
-            directions.add(new ChessPosition(0,-1));
-            directions.add(new ChessPosition(-1,0));
-            directions.add(new ChessPosition(0,1));
-            endPositions = getEndPositions(false, board, myPosition, directions);
+        addMoves(moves, myPosition, targets, true);
+        return moves;
+    }
+
+    private static void addMoves(HashSet<ChessMove> moves, ChessPosition start, long targets, boolean isPawn) {
+        while (targets != 0) {
+            int square = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            var end = ChessPosition.at(square);
+            if (isPawn && (end.getRow() == 1 || end.getRow() == 8)) {
+                moves.add(new ChessMove(start, end, PieceType.KNIGHT));
+                moves.add(new ChessMove(start, end, PieceType.ROOK));
+                moves.add(new ChessMove(start, end, PieceType.BISHOP));
+                moves.add(new ChessMove(start, end, PieceType.QUEEN));
+            } else {
+                moves.add(new ChessMove(start, end, null));
+            }
         }
-        if (board.getPiece(myPosition).getPieceType() == PieceType.KNIGHT) {
-            directions.add(new ChessPosition(2,1));
-            directions.add(new ChessPosition(2,-1));
-            directions.add(new ChessPosition(-2,1));
-            directions.add(new ChessPosition(-2,-1));
-            directions.add(new ChessPosition(1,2));
-            directions.add(new ChessPosition(1,-2));
-            directions.add(new ChessPosition(-1,2));
-            directions.add(new ChessPosition(-1,-2));
-            endPositions = getEndPositions(false, board, myPosition, directions);
+    }
+
+    /**
+     * Reads pieces back as the shared instances instead of reflecting new ones
+     */
+    static class Adapter extends TypeAdapter<ChessPiece> {
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            out.beginObject();
+            out.name("pieceColor").value(piece.pieceColor.name());
+            out.name("type").value(piece.type.name());
+            out.endObject();
         }
-        if (board.getPiece(myPosition).getPieceType() == PieceType.PAWN) {
-            endPositions = getPawnEndPositions(board, myPosition);
-            for (ChessPosition endPosition : endPositions) {
-                if (endPosition.getRow() == 1 || endPosition.getRow() == 8) {
-                    moves.add(new ChessMove(myPosition, endPosition, PieceType.KNIGHT));
-                    moves.add(new ChessMove(myPosition, endPosition, PieceType.ROOK));
-                    moves.add(new ChessMove(myPosition, endPosition, PieceType.BISHOP));
-                    moves.add(new ChessMove(myPosition, endPosition, PieceType.QUEEN));
-                }
-                else {
-                    moves.add(new ChessMove(myPosition, endPosition, null));
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            ChessGame.TeamColor pieceColor = null;
+            PieceType type = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "pieceColor" -> pieceColor = ChessGame.TeamColor.valueOf(in.nextString());
+                    case "type" -> type = PieceType.valueOf(in.nextString());
+                    default -> in.skipValue();
                 }
             }
-            return moves;
-        }
-        for (ChessPosition endPosition : endPositions) {
-            moves.add(new ChessMove(myPosition, endPosition, null));
+            in.endObject();
+            return of(pieceColor, type);
         }
-        return moves;
     }
-
-
 }
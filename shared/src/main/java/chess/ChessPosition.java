@@ -1,5 +1,11 @@
 package chess;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.Objects;
 
 /**
@@ -8,15 +14,39 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessPosition.Adapter.class)
 public class ChessPosition {
     private final int row;
     private final int col;
 
+    // the 64 on-board squares, shared so lookups and move lists don't allocate
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new ChessPosition(Bitboards.row(square), Bitboards.column(square));
+        }
+    }
+
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * @return the shared instance for an on-board square, or a new position if it's off the board
+     */
+    public static ChessPosition of(int row, int col) {
+        if (!Bitboards.onBoard(row, col)) {
+            return new ChessPosition(row, col);
+        }
+        return SQUARES[Bitboards.square(row, col)];
+    }
+
+    static ChessPosition at(int square) {
+        return SQUARES[square];
+    }
+
     /**
      * @return which row this position is in
      * #1 is the bottom row
@@ -40,6 +70,9 @@ public class ChessPosition {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
@@ -51,4 +84,33 @@ public class ChessPosition {
     public int hashCode() {
         return Objects.hash(row, col);
     }
+
+    /**
+     * Reads positions back as the shared instances instead of reflecting new ones
+     */
+    static class Adapter extends TypeAdapter<ChessPosition> {
+        @Override
+        public void write(JsonWriter out, ChessPosition position) throws IOException {
+            out.beginObject();
+            out.name("row").value(position.row);
+            out.name("col").value(position.col);
+            out.endObject();
+        }
+
+        @Override
+        public ChessPosition read(JsonReader in) throws IOException {
+            int row = 0;
+            int col = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "row" -> row = in.nextInt();
+                    case "col" -> col = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return of(row, col);
+        }
+    }
 }
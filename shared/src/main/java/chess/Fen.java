@@ -0,0 +1,201 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Reads and writes Forsyth-Edwards Notation, one pass over the characters each way. A
+ * FEN string is six fields: piece placement (rank 8 first, uppercase for white), the
+ * team to move, castling rights, the en passant square, and the halfmove and fullmove
+ * counters.
+ * <p>
+ * The move counters are optional when reading, and default to 0 and 1. The en passant
+ * square is only written when a pawn can take there, and castling rights only when the
+ * king and rook are still in place. That way every position has exactly one string.
+ */
+final class Fen {
+
+    // uppercase for white, in piece index order, so LETTERS.charAt(pieceIndex) is the letter
+    private static final String LETTERS = "KQBNRPkqbnrp";
+    private static final byte[] PIECE_INDEX = new byte[128]; // by letter, -1 for anything else
+
+    static {
+        Arrays.fill(PIECE_INDEX, (byte) -1);
+        for (int i = 0; i < LETTERS.length(); i++) {
+            PIECE_INDEX[LETTERS.charAt(i)] = (byte) i;
+        }
+    }
+
+    private Fen() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if fen isn't a well-formed FEN string
+     */
+    static ChessGame parse(String fen) {
+        var board = new ChessBoard();
+        int length = fen.length();
+        int i = 0;
+        int row = 7;
+        int col = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 8 || row == 0) {
+                    throw invalid(fen, "rank " + (row + 1) + " isn't eight squares");
+                }
+                row--;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else if (c < PIECE_INDEX.length && PIECE_INDEX[c] >= 0 && col < 8) {
+                board.placePiece(row * 8 + col++, ChessPiece.fromIndex(PIECE_INDEX[c]));
+            } else {
+                throw invalid(fen, "unexpected '" + c + "' in the placement");
+            }
+            if (col > 8) {
+                throw invalid(fen, "rank " + (row + 1) + " isn't eight squares");
+            }
+        }
+        if (row != 0 || col != 8) {
+            throw invalid(fen, "the placement isn't eight ranks");
+        }
+
+        i = field(fen, i);
+        ChessGame.TeamColor turn;
+        if (i < length && fen.charAt(i) == 'w') {
+            turn = ChessGame.TeamColor.WHITE;
+        } else if (i < length && fen.charAt(i) == 'b') {
+            turn = ChessGame.TeamColor.BLACK;
+        } else {
+            throw invalid(fen, "the team to move must be w or b");
+        }
+
+        i = field(fen, i + 1);
+        int castling = 0;
+        if (i < length && fen.charAt(i) == '-') {
+            i++;
+        } else {
+            for (; i < length && fen.charAt(i) != ' '; i++) {
+                castling |= switch (fen.charAt(i)) {
+                    case 'K' -> ChessGame.WHITE_KINGSIDE;
+                    case 'Q' -> ChessGame.WHITE_QUEENSIDE;
+                    case 'k' -> ChessGame.BLACK_KINGSIDE;
+                    case 'q' -> ChessGame.BLACK_QUEENSIDE;
+                    default -> throw invalid(fen, "unexpected '" + fen.charAt(i) + "' in the castling rights");
+                };
+            }
+            if (castling == 0) {
+                throw invalid(fen, "no castling rights");
+            }
+        }
+
+        i = field(fen, i);
+        int enPassant = ChessGame.NO_SQUARE;
+        if (i < length && fen.charAt(i) == '-') {
+            i++;
+        } else if (i + 1 < length && fen.charAt(i) >= 'a' && fen.charAt(i) <= 'h'
+                && fen.charAt(i + 1) == (turn == ChessGame.TeamColor.WHITE ? '6' : '3')) {
+            enPassant = (fen.charAt(i + 1) - '1') * 8 + fen.charAt(i) - 'a';
+            i += 2;
+        } else {
+            throw invalid(fen, "the en passant square must be - or on the rank behind a two-step");
+        }
+
+        // the halfmove clock, then the fullmove number
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        for (int counter = 0; counter < 2 && i < length; counter++) {
+            i = field(fen, i);
+            int start = i;
+            int value = 0;
+            while (i < length && fen.charAt(i) >= '0' && fen.charAt(i) <= '9') {
+                value = Math.min(value * 10 + fen.charAt(i++) - '0', 0xFFFF);
+            }
+            if (i == start) {
+                throw invalid(fen, "the move counters must be numbers");
+            }
+            if (counter == 0) {
+                halfmoveClock = value;
+            } else {
+                fullmoveNumber = Math.max(value, 1);
+            }
+        }
+        if (i != length) {
+            throw invalid(fen, "unexpected text after the fields");
+        }
+
+        var game = new ChessGame(board, turn);
+        game.castlingRights &= castling;
+        game.enPassantSquare = enPassant;
+        game.halfmoveClock = halfmoveClock;
+        game.startingPly = 2 * (fullmoveNumber - 1) + (turn == ChessGame.TeamColor.BLACK ? 1 : 0);
+        return game;
+    }
+
+    static String format(ChessGame game) {
+        var board = game.getBoard();
+        var fen = new StringBuilder(92);
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int square = row * 8; square < row * 8 + 8; square++) {
+                var piece = board.pieceAt(square);
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                fen.append(LETTERS.charAt(Bitboards.pieceIndex(piece)));
+            }
+            if (empty > 0) {
+                fen.append((char) ('0' + empty));
+            }
+            if (row > 0) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w " : " b ");
+        int castling = game.castlingRights & game.castlingRightsFromBoard();
+        if (castling == 0) {
+            fen.append('-');
+        } else {
+            if ((castling & ChessGame.WHITE_KINGSIDE) != 0) {
+                fen.append('K');
+            }
+            if ((castling & ChessGame.WHITE_QUEENSIDE) != 0) {
+                fen.append('Q');
+            }
+            if ((castling & ChessGame.BLACK_KINGSIDE) != 0) {
+                fen.append('k');
+            }
+            if ((castling & ChessGame.BLACK_QUEENSIDE) != 0) {
+                fen.append('q');
+            }
+        }
+
+        int enPassant = game.capturableEnPassantSquare();
+        if (enPassant == ChessGame.NO_SQUARE) {
+            fen.append(" -");
+        } else {
+            fen.append(' ').append((char) ('a' + (enPassant & 7))).append((char) ('1' + (enPassant >>> 3)));
+        }
+        return fen.append(' ').append(game.getHalfmoveClock()).append(' ').append(game.getFullmoveNumber()).toString();
+    }
+
+    /**
+     * @return the index after the space that has to end a field at i
+     */
+    private static int field(String fen, int i) {
+        if (i >= fen.length() || fen.charAt(i) != ' ') {
+            throw invalid(fen, "missing fields");
+        }
+        return i + 1;
+    }
+
+    private static IllegalArgumentException invalid(String fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN \"" + fen + "\": " + reason);
+    }
+}
@@ -0,0 +1,178 @@
+package chess;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compact binary form of a {@link ChessGame}, for storing games and sending them
+ * around. A position takes at most {@value #MAX_POSITION_BYTES} bytes, each move of its
+ * history two more, and each position since the last capture or pawn move eight more
+ * for spotting repetitions. As JSON a game takes a few kilobytes.
+ * <p>
+ * Layout:
+ * <pre>
+ *     byte     version
+ *     byte     flags: black to move (bit 0), game over (bit 1), castling rights (bits 2-5)
+ *     byte     en passant square, 64 for none
+ *     long     occupied squares, bit n for square n (a1 = 0, h8 = 63)
+ *     nibbles  the piece on each occupied square, in square order, two to a byte
+ *     short    how many moves the history has (unsigned)
+ *     shorts   the history's moves as {@link PackedMove}s, oldest first
+ *     short    the halfmove clock (unsigned)
+ *     int      plies played before the history starts, for a game set up from FEN
+ *     longs    the position keys before the history's last moves, one for each tick of
+ *              the clock, or each move if there are fewer, oldest first
+ * </pre>
+ * A piece nibble is the board's piece index: team * 6 + {@link ChessPiece.PieceType}
+ * ordinal. Everything is read and written straight through the caller's buffer, in its
+ * byte order.
+ */
+public final class GameCodec {
+
+    public static final int VERSION = 1;
+    /** the most bytes a position takes, leaving out the history: a full board of 32 pieces */
+    public static final int MAX_POSITION_BYTES = 3 + Long.BYTES + 16;
+
+    private static final int BLACK_TO_MOVE = 1;
+    private static final int GAME_OVER = 2;
+    private static final int CASTLING_SHIFT = 2;
+    private static final int MAX_COUNT = 0xFFFF;
+
+    private GameCodec() {
+    }
+
+    /**
+     * @return how many bytes the game encodes to
+     */
+    public static int size(ChessGame game) {
+        int pieces = Long.bitCount(game.getBoard().getOccupied());
+        return 3 + Long.BYTES + (pieces + 1) / 2 + Short.BYTES * (2 + game.historyCount) + Integer.BYTES
+                + Long.BYTES * repetitionWindow(game);
+    }
+
+    /**
+     * Writes the game at the buffer's position, and moves the position past it
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has less than {@link #size} left
+     * @throws IllegalArgumentException if the game's history is too long to store
+     */
+    public static void encode(ChessGame game, ByteBuffer out) {
+        if (game.historyCount > MAX_COUNT) {
+            throw new IllegalArgumentException("Too many moves to store: " + game.historyCount);
+        }
+        var board = game.getBoard();
+        int flags = game.castlingRights << CASTLING_SHIFT;
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            flags |= BLACK_TO_MOVE;
+        }
+        if (game.getIsGameOver()) {
+            flags |= GAME_OVER;
+        }
+        long occupied = board.getOccupied();
+        out.put((byte) VERSION).put((byte) flags).put((byte) game.enPassantSquare).putLong(occupied);
+        int pending = -1; // the first nibble of a byte, waiting for its second
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            int piece = Bitboards.pieceIndex(board.pieceAt(Long.numberOfTrailingZeros(squares)));
+            if (pending < 0) {
+                pending = piece;
+            } else {
+                out.put((byte) (pending << 4 | piece));
+                pending = -1;
+            }
+        }
+        if (pending >= 0) {
+            out.put((byte) (pending << 4));
+        }
+        out.putShort((short) game.historyCount);
+        for (int i = 0; i < game.historyCount; i++) {
+            out.putShort(game.history[i]);
+        }
+        out.putShort((short) Math.min(game.halfmoveClock, MAX_COUNT));
+        out.putInt(game.startingPly);
+        for (int i = game.historyCount - repetitionWindow(game); i < game.historyCount; i++) {
+            out.putLong(game.keyHistory[i]);
+        }
+    }
+
+    /**
+     * @return the game's bytes, exactly as long as it needs
+     */
+    public static byte[] encode(ChessGame game) {
+        var bytes = new byte[size(game)];
+        encode(game, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Reads a game from the buffer's position, and moves the position past it
+     *
+     * @throws IllegalArgumentException if the bytes aren't a game this version can read
+     * @throws java.nio.BufferUnderflowException if the buffer ends partway through a game
+     */
+    public static ChessGame decode(ByteBuffer in) {
+        int version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown game encoding version " + version);
+        }
+        int flags = in.get() & 0xFF;
+        int enPassant = in.get() & 0xFF;
+        long occupied = in.getLong();
+        if (enPassant > ChessGame.NO_SQUARE || flags >>> CASTLING_SHIFT > ChessGame.ALL_CASTLING) {
+            throw new IllegalArgumentException("Corrupt game encoding");
+        }
+        var board = new ChessBoard();
+        int current = 0;
+        boolean high = true;
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            int piece;
+            if (high) {
+                current = in.get() & 0xFF;
+                piece = current >>> 4;
+            } else {
+                piece = current & 0xF;
+            }
+            high = !high;
+            if (piece >= Bitboards.PIECE_KINDS) {
+                throw new IllegalArgumentException("Corrupt game encoding");
+            }
+            board.placePiece(Long.numberOfTrailingZeros(squares), ChessPiece.fromIndex(piece));
+        }
+        var turn = (flags & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        var game = new ChessGame(board, turn);
+        game.castlingRights = flags >>> CASTLING_SHIFT;
+        game.enPassantSquare = enPassant;
+        game.isGameOver = (flags & GAME_OVER) != 0;
+        int moves = in.getShort() & 0xFFFF;
+        if (moves > game.history.length) {
+            game.history = new short[moves];
+            game.keyHistory = new long[moves];
+        }
+        for (int i = 0; i < moves; i++) {
+            game.history[i] = in.getShort();
+        }
+        game.historyCount = moves;
+        game.halfmoveClock = in.getShort() & 0xFFFF;
+        game.startingPly = in.getInt();
+        if (game.startingPly < 0) {
+            throw new IllegalArgumentException("Corrupt game encoding");
+        }
+        // keys from before the window are never looked at, so they're left out
+        for (int i = game.historyCount - repetitionWindow(game); i < game.historyCount; i++) {
+            game.keyHistory[i] = in.getLong();
+        }
+        return game;
+    }
+
+    /**
+     * @return the game the bytes hold
+     */
+    public static ChessGame decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @return how many of the history's positions could still repeat
+     */
+    private static int repetitionWindow(ChessGame game) {
+        return Math.min(game.halfmoveClock, game.historyCount);
+    }
+}
@@ -0,0 +1,237 @@
+package chess;
+
+import java.io.Serial;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A legal move cache that many games can share, keyed by position hash. Games that
+ * reach the same position (every game's opening, for a start) then generate its moves
+ * only once between them. Attach one to a game with {@link ChessGame#setMoveCache}.
+ * <p>
+ * The cache holds at most a fixed number of bytes. It is split into segments, each
+ * one an LRU list behind its own lock. A full segment only takes a new position if
+ * the position has been asked for more often than the entries it would push out.
+ * This is TinyLFU admission. The counts come from a small count-min sketch that
+ * halves itself now and then, so old popularity fades.
+ * <p>
+ * Every entry also keeps the board's occupancy. On the rare hash collision, the
+ * occupancy won't match and the lookup counts as a miss instead of returning
+ * another position's moves.
+ */
+public final class LegalMoveCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int ENTRY_OVERHEAD = 96; // map node, boxed key, entry and array headers
+    private static final int TYPICAL_MOVES = 32;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maximumBytes roughly how much memory the cached move lists may take up
+     */
+    public LegalMoveCache(long maximumBytes) {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maximumBytes / SEGMENTS);
+        }
+        sketch = new FrequencySketch(maximumBytes / (ENTRY_OVERHEAD + 2 * TYPICAL_MOVES));
+    }
+
+    /**
+     * Copies the cached moves for a position into moves
+     *
+     * @param occupied the position's occupancy, checked against the entry
+     * @return false if the position isn't cached, leaving moves alone
+     */
+    boolean get(long key, long occupied, MoveList moves) {
+        sketch.increment(key);
+        var segment = segmentFor(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        if (entry == null || entry.occupied != occupied) {
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        moves.clear();
+        for (short move : entry.moves) {
+            moves.add(move & 0xFFFF);
+        }
+        return true;
+    }
+
+    void put(long key, long occupied, MoveList moves) {
+        var packed = new short[moves.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = (short) moves.get(i);
+        }
+        var entry = new Entry(occupied, packed);
+        var segment = segmentFor(key);
+        synchronized (segment) {
+            var old = segment.remove(key);
+            if (old != null) {
+                segment.weight -= old.weight();
+            }
+            // push out the least recently used entries, if this one is asked for more often than the first of them
+            var eldest = segment.entrySet().iterator();
+            boolean admitted = false;
+            while (segment.weight + entry.weight() > segment.maximumWeight && eldest.hasNext()) {
+                var victim = eldest.next();
+                if (!admitted && sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+                    rejections.increment();
+                    return;
+                }
+                admitted = true;
+                eldest.remove();
+                segment.weight -= victim.getValue().weight();
+                evictions.increment();
+            }
+            if (segment.weight + entry.weight() > segment.maximumWeight) {
+                rejections.increment();
+                return;
+            }
+            segment.put(key, entry);
+            segment.weight += entry.weight();
+        }
+    }
+
+    /**
+     * Drops every entry and resets the counters
+     */
+    public void clear() {
+        for (var segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.weight = 0;
+            }
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        rejections.reset();
+    }
+
+    public Stats getStats() {
+        long weight = 0;
+        int entries = 0;
+        for (var segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+                entries += segment.size();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), entries, weight);
+    }
+
+    private Segment segmentFor(long key) {
+        return segments[(int) (key >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * @param rejections positions that weren't cached because they were asked for less
+     *                   often than the entries they'd replace
+     */
+    public record Stats(long hits, long misses, long evictions, long rejections, int entries, long bytes) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+
+    private record Entry(long occupied, short[] moves) {
+        int weight() {
+            return ENTRY_OVERHEAD + 2 * moves.length;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<Long, Entry> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        final long maximumWeight;
+        long weight;
+
+        Segment(long maximumWeight) {
+            super(16, 0.75f, true); // access order, so the eldest entry is the least recently used
+            this.maximumWeight = maximumWeight;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return false; // put does its own eviction by weight
+        }
+    }
+
+    /**
+     * Approximate request counts, four rows of saturating counters indexed by
+     * different hashes of the key; a key's count is its smallest counter. Updates
+     * aren't synchronized, since a lost increment only makes a count slightly low.
+     */
+    private static final class FrequencySketch {
+        private static final int MAX_COUNT = 15;
+        private static final long[] SEEDS = {
+                0x9E3779B97F4A7C15L, 0xBF58476D1CE4E5B9L, 0x94D049BB133111EBL, 0xD6E8FEB86659FD93L};
+
+        private final byte[][] rows = new byte[4][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(long expectedEntries) {
+            int width = Integer.highestOneBit(Math.clamp(expectedEntries, 64, 1 << 24) * 2 - 1);
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new byte[width];
+            }
+            mask = width - 1;
+            sampleSize = width * 10;
+        }
+
+        void increment(long key) {
+            boolean added = false;
+            for (int i = 0; i < rows.length; i++) {
+                int index = index(key, i);
+                if (rows[i][index] < MAX_COUNT) {
+                    rows[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                halve();
+            }
+        }
+
+        int frequency(long key) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < rows.length; i++) {
+                frequency = Math.min(frequency, rows[i][index(key, i)]);
+            }
+            return frequency;
+        }
+
+        private void halve() {
+            additions = 0;
+            for (byte[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+        }
+
+        private int index(long key, int row) {
+            long hash = (key ^ (key >>> 29)) * SEEDS[row];
+            return (int) (hash >>> 40) & mask;
+        }
+    }
+}
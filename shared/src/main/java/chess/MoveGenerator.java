@@ -0,0 +1,175 @@
+package chess;
+
+/**
+ * Generates strictly legal moves for one team without trying them on the board.
+ * <p>
+ * Everything that can make a move illegal is worked out once per call: the pieces
+ * giving check (which limit the other pieces to blocking or capturing), and the
+ * pieces pinned to their king (which may only slide along the pin). The king itself
+ * only steps onto squares the enemy doesn't attack. En passant is the one move that
+ * can uncover an attack by removing two pieces from a row, so it gets checked directly.
+ */
+final class MoveGenerator {
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT};
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Adds the team's legal moves, starting from squares in origins, to moves
+     *
+     * @param enPassantSquare square a pawn may capture en passant onto, or ChessGame.NO_SQUARE
+     */
+    static void generate(ChessBoard board, ChessGame.TeamColor team, int castlingRights, int enPassantSquare,
+                         long origins, MoveList moves) {
+        var enemy = ChessGame.opponent(team);
+        long own = board.getTeamBitboard(team);
+        long occupied = board.getOccupied();
+        long kings = board.getBitboard(team, ChessPiece.PieceType.KING);
+        int king = board.kingSquare(team);
+
+        long checkers = 0L;
+        long pinned = 0L;
+        long evasions = -1L; // squares that stop a check: the checker and anything between it and the king
+        if (king != ChessGame.NO_SQUARE) {
+            checkers = board.attackers(king, enemy, occupied);
+            if (Long.bitCount(checkers) > 1) {
+                evasions = 0L; // double check, only the king can move
+            } else if (checkers != 0) {
+                evasions = checkers | Attacks.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+            }
+            pinned = pinnedPieces(board, king, team, enemy);
+        }
+
+        long pieces = own & origins & ~kings;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            var type = board.pieceAt(from).getPieceType();
+            long allowed = evasions;
+            if ((pinned & Bitboards.bit(from)) != 0) {
+                allowed &= Attacks.LINE[king][from];
+            }
+            if (type == ChessPiece.PieceType.PAWN) {
+                addPawnMoves(board, team, from, allowed, enPassantSquare, king, moves);
+            } else {
+                addMoves(from, Attacks.of(type, team, from, occupied) & ~own & allowed, moves);
+            }
+        }
+
+        if (king != ChessGame.NO_SQUARE && (origins & kings & Bitboards.bit(king)) != 0) {
+            addKingMoves(board, team, king, checkers, castlingRights, moves);
+        }
+    }
+
+    /**
+     * @return the team's pieces that are the only thing standing between their king and an enemy slider
+     */
+    private static long pinnedPieces(ChessBoard board, int king, ChessGame.TeamColor team, ChessGame.TeamColor enemy) {
+        long queens = board.getBitboard(enemy, ChessPiece.PieceType.QUEEN);
+        long snipers = (Attacks.rook(king, 0L) & (queens | board.getBitboard(enemy, ChessPiece.PieceType.ROOK)))
+                | (Attacks.bishop(king, 0L) & (queens | board.getBitboard(enemy, ChessPiece.PieceType.BISHOP)));
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.BETWEEN[king][sniper] & board.getOccupied();
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & board.getTeamBitboard(team);
+            }
+        }
+        return pinned;
+    }
+
+    private static void addPawnMoves(ChessBoard board, ChessGame.TeamColor team, int from, long allowed,
+                                     int enPassantSquare, int king, MoveList moves) {
+        long occupied = board.getOccupied();
+        long start = Bitboards.bit(from);
+        long targets = Attacks.PAWN[team.ordinal()][from] & board.getTeamBitboard(ChessGame.opponent(team));
+        if (team == ChessGame.TeamColor.WHITE) {
+            long forward = (start << 8) & ~occupied;
+            targets |= forward | (((forward & (Bitboards.RANK_1 << 16)) << 8) & ~occupied);
+        } else {
+            long downward = (start >>> 8) & ~occupied;
+            targets |= downward | (((downward & (Bitboards.RANK_8 >>> 16)) >>> 8) & ~occupied);
+        }
+        addPawnTargets(from, targets & allowed, moves);
+
+        if (enPassantSquare != ChessGame.NO_SQUARE
+                && (Attacks.PAWN[team.ordinal()][from] & Bitboards.bit(enPassantSquare)) != 0) {
+            int captured = team == ChessGame.TeamColor.WHITE ? enPassantSquare - 8 : enPassantSquare + 8;
+            // replay the capture on the occupancy and look for anything that now hits the king
+            long after = (occupied ^ start ^ Bitboards.bit(captured)) | Bitboards.bit(enPassantSquare);
+            if (king == ChessGame.NO_SQUARE
+                    || (board.attackers(king, ChessGame.opponent(team), after) & ~Bitboards.bit(captured)) == 0) {
+                moves.add(PackedMove.of(from, enPassantSquare, PackedMove.EN_PASSANT));
+            }
+        }
+    }
+
+    private static void addKingMoves(ChessBoard board, ChessGame.TeamColor team, int king, long checkers,
+                                     int castlingRights, MoveList moves) {
+        var enemy = ChessGame.opponent(team);
+        // take the king off the board so it can't hide behind itself from a slider
+        long withoutKing = board.getOccupied() ^ Bitboards.bit(king);
+        long targets = Attacks.KING[king] & ~board.getTeamBitboard(team);
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (board.attackers(to, enemy, withoutKing) == 0) {
+                moves.add(PackedMove.of(king, to, PackedMove.NORMAL));
+            }
+        }
+
+        int row = team == ChessGame.TeamColor.WHITE ? 1 : 8;
+        if (checkers == 0 && king == Bitboards.square(row, 5)) {
+            int kingside = team == ChessGame.TeamColor.WHITE ? ChessGame.WHITE_KINGSIDE : ChessGame.BLACK_KINGSIDE;
+            int queenside = team == ChessGame.TeamColor.WHITE ? ChessGame.WHITE_QUEENSIDE : ChessGame.BLACK_QUEENSIDE;
+            if (canCastle(board, team, castlingRights & kingside, Bitboards.square(row, 8), king + 1, king + 2)) {
+                moves.add(PackedMove.of(king, king + 2, PackedMove.CASTLING));
+            }
+            if (canCastle(board, team, castlingRights & queenside, Bitboards.square(row, 1), king - 1, king - 2)
+                    && board.pieceAt(king - 3) == null) {
+                moves.add(PackedMove.of(king, king - 2, PackedMove.CASTLING));
+            }
+        }
+    }
+
+    /**
+     * @param crossed the square the king passes over, and lands on
+     */
+    private static boolean canCastle(ChessBoard board, ChessGame.TeamColor team, int right, int rookSquare,
+                                     int crossed, int landing) {
+        var rook = board.pieceAt(rookSquare);
+        if (right == 0 || rook == null || rook.getTeamColor() != team || rook.getPieceType() != ChessPiece.PieceType.ROOK) {
+            return false;
+        }
+        var enemy = ChessGame.opponent(team);
+        return board.pieceAt(crossed) == null && board.pieceAt(landing) == null
+                && !board.isAttacked(crossed, enemy) && !board.isAttacked(landing, enemy);
+    }
+
+    private static void addMoves(int from, long targets, MoveList moves) {
+        while (targets != 0) {
+            moves.add(PackedMove.of(from, Long.numberOfTrailingZeros(targets), PackedMove.NORMAL));
+            targets &= targets - 1;
+        }
+    }
+
+    private static void addPawnTargets(int from, long targets, MoveList moves) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (to < 8 || to >= 56) {
+                for (var promotion : PROMOTIONS) {
+                    moves.add(PackedMove.promotion(from, to, promotion));
+                }
+            } else {
+                moves.add(PackedMove.of(from, to, PackedMove.NORMAL));
+            }
+        }
+    }
+}
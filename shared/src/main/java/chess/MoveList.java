@@ -0,0 +1,44 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of {@link PackedMove} ints. Sized for the most moves a real chess
+ * position allows, so generating into it doesn't allocate; call {@link #clear()} to reuse it.
+ */
+public final class MoveList {
+
+    static final int CAPACITY = 256;
+
+    private int[] moves = new int[CAPACITY];
+    private int size;
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2); // only for made-up boards with piles of queens
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int i) {
+        return moves[i];
+    }
+
+    public void swap(int i, int j) {
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
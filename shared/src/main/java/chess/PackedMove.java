@@ -0,0 +1,79 @@
+package chess;
+
+/**
+ * Moves packed into the low 16 bits of an int, so move lists are plain int arrays
+ * and generating a move allocates nothing:
+ * <pre>
+ *  bits 0-5    start square
+ *  bits 6-11   end square
+ *  bits 12-13  promotion piece (knight, bishop, rook, queen)
+ *  bits 14-15  kind (normal, promotion, en passant, castling)
+ * </pre>
+ * {@link ChessMove} objects are only built from these when a caller outside the engine asks for them.
+ * Searches play packed moves straight through {@link ChessGame#doMove(int)}.
+ */
+public final class PackedMove {
+
+    public static final int NONE = 0; // a1 to a1 is never a real move
+    public static final int NORMAL = 0;
+    public static final int PROMOTION = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLING = 3;
+
+    private static final ChessPiece.PieceType[] PROMOTION_TYPES = {
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN};
+
+    private PackedMove() {
+    }
+
+    public static int of(int from, int to, int kind) {
+        return from | (to << 6) | (kind << 14);
+    }
+
+    public static int promotion(int from, int to, ChessPiece.PieceType type) {
+        return of(from, to, PROMOTION) | (promotionCode(type) << 12);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int kind(int move) {
+        return (move >>> 14) & 3;
+    }
+
+    /**
+     * @return the piece a pawn promotes to, or null if the move isn't a promotion
+     */
+    public static ChessPiece.PieceType promotionType(int move) {
+        return kind(move) == PROMOTION ? PROMOTION_TYPES[(move >>> 12) & 3] : null;
+    }
+
+    /**
+     * @return true if this packed move has the same start, end and promotion as move
+     */
+    public static boolean matches(int packed, ChessMove move) {
+        return from(packed) == Bitboards.square(move.getStartPosition())
+                && to(packed) == Bitboards.square(move.getEndPosition())
+                && promotionType(packed) == move.getPromotionPiece();
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(ChessPosition.at(from(move)), ChessPosition.at(to(move)), promotionType(move));
+    }
+
+    private static int promotionCode(ChessPiece.PieceType type) {
+        return switch (type) {
+            case KNIGHT -> 0;
+            case BISHOP -> 1;
+            case ROOK -> 2;
+            case QUEEN -> 3;
+            default -> throw new IllegalArgumentException("Can't promote to " + type);
+        };
+    }
+}
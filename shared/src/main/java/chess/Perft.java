@@ -0,0 +1,123 @@
+package chess;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Perft: counts the leaf nodes of the legal move tree to a fixed depth. The counts for
+ * the positions below are well known, so any change to move generation can be checked
+ * against them, and the time taken gives a rough nodes-per-second figure.
+ * <p>
+ * Everything runs through the public {@link ChessGame} API, the same one the server uses.
+ * <pre>
+ *     java chess.Perft [depth] [position] [--divide]
+ * </pre>
+ */
+public final class Perft {
+
+    /**
+     * A test position. placement is the piece-placement field of a FEN string (rank 8
+     * first, uppercase for white); castling rights follow from the kings and rooks, and
+     * white is to move. nodes[d - 1] is the node count at depth d.
+     */
+    public record Position(String name, String placement, long... nodes) {
+        public ChessGame load() {
+            return ChessGame.fromFen(placement + " w KQkq -"); // rights the pieces don't allow are dropped
+        }
+
+        public int maxDepth() {
+            return nodes.length;
+        }
+    }
+
+    public static final List<Position> POSITIONS = List.of(
+            new Position("start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR",
+                    20, 400, 8_902, 197_281, 4_865_609),
+            new Position("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R",
+                    48, 2_039, 97_862, 4_085_603),
+            new Position("endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8",
+                    14, 191, 2_812, 43_238, 674_624, 11_030_083),
+            new Position("promotions", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1",
+                    6, 264, 9_467, 422_333, 15_833_292),
+            new Position("discovered", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R",
+                    44, 1_486, 62_379, 2_103_487),
+            new Position("symmetric", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1",
+                    46, 2_079, 89_890, 3_894_594));
+
+    private Perft() {
+    }
+
+    /**
+     * @return the number of move sequences of exactly depth moves from the game's position
+     */
+    public static long perft(ChessGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        var moves = game.validMoves(game.getTeamTurn());
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (var move : moves) {
+            game.doMove(move);
+            nodes += perft(game, depth - 1);
+            game.undoMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the perft count below each root move, for narrowing down which move a
+     * wrong total comes from
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        var counts = new LinkedHashMap<ChessMove, Long>();
+        for (var move : game.validMoves(game.getTeamTurn())) {
+            game.doMove(move);
+            counts.put(move, perft(game, depth - 1));
+            game.undoMove();
+        }
+        return counts;
+    }
+
+    public static void main(String[] args) {
+        int depth = 0;
+        String name = null;
+        boolean divide = false;
+        for (var arg : args) {
+            if (arg.equals("--divide")) {
+                divide = true;
+            } else if (arg.chars().allMatch(Character::isDigit)) {
+                depth = Integer.parseInt(arg);
+            } else {
+                name = arg;
+            }
+        }
+
+        for (var position : POSITIONS) {
+            if (name != null && !name.equals(position.name())) {
+                continue;
+            }
+            int d = depth > 0 ? depth : position.maxDepth() - 1;
+            var game = position.load();
+            long start = System.nanoTime();
+            long nodes;
+            if (divide) {
+                nodes = 0;
+                for (var entry : divide(game, d).entrySet()) {
+                    System.out.printf("  %s: %d%n", entry.getKey(), entry.getValue());
+                    nodes += entry.getValue();
+                }
+            } else {
+                nodes = perft(game, d);
+            }
+            long nanos = Math.max(1, System.nanoTime() - start);
+            var result = d > position.maxDepth() ? "" : nodes == position.nodes()[d - 1] ? " ok" : " WRONG, expected "
+                    + position.nodes()[d - 1];
+            System.out.printf("%-10s depth %d: %,d nodes in %d ms (%,d nps)%s%n", position.name(), d, nodes,
+                    nanos / 1_000_000, nodes * 1_000_000_000L / nanos, result);
+        }
+    }
+}
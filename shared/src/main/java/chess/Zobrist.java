@@ -0,0 +1,61 @@
+package chess;
+
+/**
+ * Random 64-bit keys for Zobrist hashing. A position's key is the XOR of the key for
+ * every (piece, square) pair on the board, plus keys for the team to move, the
+ * castling rights and the en passant file, so a move only has to XOR the few keys it
+ * changes.
+ * <p>
+ * The keys come from a fixed seed, so a position hashes the same in every process and
+ * keys can be stored or compared across restarts.
+ */
+final class Zobrist {
+
+    static final long[][] PIECE_SQUARE = new long[Bitboards.PIECE_KINDS][64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EN_PASSANT_FILE = new long[8];
+    static final long BLACK_TO_MOVE;
+    // marks a lookup for the team that isn't to move, whose moves differ from the mover's
+    static final long OFF_TURN;
+
+    static {
+        var random = new SplitMix(0x5EED_C240_0000_0001L);
+        for (long[] squares : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                squares[square] = random.next();
+            }
+        }
+        // combinations of rights get the XOR of the single-right keys
+        long[] single = {random.next(), random.next(), random.next(), random.next()};
+        for (int rights = 0; rights < 16; rights++) {
+            for (int bit = 0; bit < 4; bit++) {
+                if ((rights & (1 << bit)) != 0) {
+                    CASTLING[rights] ^= single[bit];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = random.next();
+        }
+        BLACK_TO_MOVE = random.next();
+        OFF_TURN = random.next();
+    }
+
+    private Zobrist() {
+    }
+
+    private static final class SplitMix {
+        private long state;
+
+        SplitMix(long seed) {
+            state = seed;
+        }
+
+        long next() {
+            long z = (state += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+/**
+ * Static evaluation in centipawns, from the point of view of the team to move.
+ * <p>
+ * Material and piece-square scores come straight from the running totals the board
+ * keeps as pieces move (see {@link ChessBoard#getMidgameScore}). There is one total
+ * for the middlegame and one for the endgame, and the two are blended by how much
+ * material is left. So scoring a position doesn't depend on how many pieces are on it.
+ * Pawn structure is slower to score, but it changes rarely, so each evaluator caches
+ * it in a {@link PawnHashTable} keyed by {@link ChessBoard#getPawnKey}.
+ * <p>
+ * An evaluator isn't thread-safe; give each search thread its own.
+ */
+public final class Evaluator implements PositionEvaluator {
+
+    // indexed by PieceType ordinal: king, queen, bishop, knight, rook, pawn. Used for move ordering
+    static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    private static final int DOUBLED_MIDGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+    // indexed by the pawn's rank counted from its own side, 0 for the back rank
+    private static final int[] PASSED_MIDGAME = {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 20, 35, 60, 100, 150, 0};
+
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // squares ahead of a pawn, on its own file and either side, where an enemy pawn stops it being passed
+    private static final long[][] PASSED_SPANS = new long[2][64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILES[file] = FILE_A << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+        }
+        for (int square = 0; square < 64; square++) {
+            int rank = square >>> 3;
+            long span = FILES[square & 7] | ADJACENT_FILES[square & 7];
+            long whiteAhead = rank == 7 ? 0 : -1L << (8 * (rank + 1));
+            long blackAhead = rank == 0 ? 0 : -1L >>> (8 * (8 - rank));
+            PASSED_SPANS[ChessGame.TeamColor.WHITE.ordinal()][square] = span & whiteAhead;
+            PASSED_SPANS[ChessGame.TeamColor.BLACK.ordinal()][square] = span & blackAhead;
+        }
+    }
+
+    private final PawnHashTable pawnTable;
+
+    public Evaluator() {
+        this(new PawnHashTable(1 << 14));
+    }
+
+    public Evaluator(PawnHashTable pawnTable) {
+        this.pawnTable = pawnTable;
+    }
+
+    @Override
+    public int evaluate(ChessGame game) {
+        var board = game.getBoard();
+        int midgame = board.getMidgameScore(ChessGame.TeamColor.WHITE) - board.getMidgameScore(ChessGame.TeamColor.BLACK);
+        int endgame = board.getEndgameScore(ChessGame.TeamColor.WHITE) - board.getEndgameScore(ChessGame.TeamColor.BLACK);
+
+        long pawnKey = board.getPawnKey();
+        int pawns = pawnTable.probe(pawnKey);
+        if (pawns == PawnHashTable.MISS) {
+            pawns = pawnStructure(board);
+            pawnTable.store(pawnKey, pawns);
+        }
+        midgame += PawnHashTable.midgame(pawns);
+        endgame += PawnHashTable.endgame(pawns);
+
+        int phase = Math.min(board.getPhase(), ChessBoard.MAX_PHASE);
+        int score = (midgame * phase + endgame * (ChessBoard.MAX_PHASE - phase)) / ChessBoard.MAX_PHASE;
+        return game.getTeamTurn() == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    /**
+     * @return doubled, isolated and passed pawn scores from white's point of view,
+     * packed by {@link PawnHashTable#pack}
+     */
+    static int pawnStructure(ChessBoard board) {
+        long white = board.getBitboard(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
+        long black = board.getBitboard(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN);
+        int midgame = 0;
+        int endgame = 0;
+        for (var team : ChessGame.TeamColor.values()) {
+            boolean isWhite = team == ChessGame.TeamColor.WHITE;
+            long own = isWhite ? white : black;
+            long enemy = isWhite ? black : white;
+            int sign = isWhite ? 1 : -1;
+            for (int file = 0; file < 8; file++) {
+                int count = Long.bitCount(own & FILES[file]);
+                if (count == 0) {
+                    continue;
+                }
+                midgame += sign * (count - 1) * DOUBLED_MIDGAME;
+                endgame += sign * (count - 1) * DOUBLED_ENDGAME;
+                if ((own & ADJACENT_FILES[file]) == 0) {
+                    midgame += sign * count * ISOLATED_MIDGAME;
+                    endgame += sign * count * ISOLATED_ENDGAME;
+                }
+            }
+            for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+                int square = Long.numberOfTrailingZeros(pawns);
+                long span = PASSED_SPANS[team.ordinal()][square];
+                // the rear pawn of a doubled pair isn't passed, since its own pawn is in the way
+                if ((span & (enemy | own & FILES[square & 7])) == 0) {
+                    int rank = isWhite ? square >>> 3 : 7 - (square >>> 3);
+                    midgame += sign * PASSED_MIDGAME[rank];
+                    endgame += sign * PASSED_ENDGAME[rank];
+                }
+            }
+        }
+        return PawnHashTable.pack(midgame, endgame);
+    }
+}
@@ -0,0 +1,105 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Searches one position on several threads at once, the Lazy SMP way. Every thread
+ * runs an ordinary {@link Searcher} on the same root, and they only cooperate through
+ * the transposition table they share. Each thread soon finds positions the others
+ * have already searched, and skips them. Half the helper threads start one ply
+ * deeper than the main thread, so the threads don't all walk the tree in the same
+ * order.
+ * <p>
+ * The main thread's limits decide when everything stops. The helpers share its
+ * deadline and are told to stop as soon as it finishes. The move played comes from
+ * whichever thread completed the deepest round, preferring the main thread on a tie.
+ * <p>
+ * The threads are kept for reuse between searches; {@link #close()} shuts them down.
+ * The table is never aged here; that's up to whoever owns it, see {@link TranspositionTable}.
+ */
+public class LazySmpSearcher implements AutoCloseable {
+
+    private final TranspositionTable table;
+    private final Searcher[] searchers;
+    private final ExecutorService helpers;
+
+    public LazySmpSearcher(int threads, TranspositionTable table) {
+        this(threads, table, Evaluator::new);
+    }
+
+    /**
+     * @param evaluators makes one evaluator for each thread
+     */
+    public LazySmpSearcher(int threads, TranspositionTable table, Supplier<? extends PositionEvaluator> evaluators) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one search thread");
+        }
+        this.table = table;
+        searchers = new Searcher[threads];
+        for (int i = 0; i < threads; i++) {
+            searchers[i] = new Searcher(table, evaluators.get());
+        }
+        helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+            var thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return searchers.length;
+    }
+
+    /**
+     * Searches the position for the team whose turn it is, on every thread. The game
+     * itself is left untouched.
+     */
+    public SearchResult search(ChessGame position, SearchLimits limits) {
+        long start = System.nanoTime();
+        var stop = new AtomicBoolean();
+        var running = new ArrayList<Future<SearchResult>>();
+        for (int i = 1; i < searchers.length; i++) {
+            var searcher = searchers[i];
+            int firstDepth = 1 + (i & 1);
+            var helperLimits = new SearchLimits(limits.maxDepth(), Long.MAX_VALUE, limits.maxMillis());
+            running.add(helpers.submit(() -> searcher.search(position, helperLimits, firstDepth, stop)));
+        }
+
+        var best = searchers[0].search(position, limits, 1, null);
+        stop.set(true);
+        long nodes = best.nodes();
+        for (var future : running) {
+            SearchResult result;
+            try {
+                result = future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Search helper failed", ex.getCause());
+            }
+            nodes += result.nodes();
+            if (result.depth() > best.depth() && result.bestMove() != null) {
+                best = result;
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new SearchResult(best.bestMove(), best.score(), best.depth(), nodes, millis,
+                table.hashfull(), best.principalVariation());
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+}
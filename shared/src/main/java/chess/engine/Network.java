@@ -0,0 +1,128 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The weights of a small efficiently updatable neural network (NNUE) for
+ * {@link NnueEvaluator}.
+ * <p>
+ * The input is one feature for each piece on each square (768), seen from each team's
+ * side of the board. Each side's features feed a hidden layer of int16 neurons, the
+ * accumulator. Because the input changes by only a few features per move, the
+ * accumulator can be updated instead of recomputed. The output is a dot product of
+ * both accumulators, clipped to [0, {@value #QA}], with the side to move's first. It
+ * runs on ordinary integer arithmetic on any CPU.
+ * <p>
+ * Weights files are little-endian: the magic number {@code NNUE}, a version, the hidden
+ * layer size, then the feature weights (feature by feature), the hidden biases, the
+ * output weights and the output bias. Feature weights and biases are scaled by
+ * {@value #QA}, output weights by {@value #QB}.
+ */
+public final class Network {
+
+    static final int INPUTS = 2 * 6 * 64;
+    static final int QA = 255;
+    static final int QB = 64;
+    private static final int SCALE = 400; // network output to centipawns
+
+    private static final int MAGIC = 'N' | 'N' << 8 | 'U' << 16 | 'E' << 24;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+
+    final int hidden;
+    final short[] featureWeights; // INPUTS rows of hidden weights
+    final short[] hiddenBiases;
+    final short[] outputWeights; // side to move's accumulator first
+    final int outputBias;
+    private final int[] wideOutputWeights;
+
+    public Network(int hidden, short[] featureWeights, short[] hiddenBiases, short[] outputWeights, int outputBias) {
+        if (hidden < 1 || featureWeights.length != INPUTS * hidden || hiddenBiases.length != hidden
+                || outputWeights.length != 2 * hidden) {
+            throw new IllegalArgumentException("Layer sizes don't match a hidden layer of " + hidden);
+        }
+        this.hidden = hidden;
+        this.featureWeights = featureWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+        wideOutputWeights = new int[2 * hidden];
+        for (int i = 0; i < wideOutputWeights.length; i++) {
+            wideOutputWeights[i] = outputWeights[i];
+        }
+    }
+
+    public static Network load(Path file) throws IOException {
+        var buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an NNUE weights file: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported NNUE weights version " + version);
+        }
+        int hidden = buffer.getInt();
+        if (hidden < 1 || buffer.remaining() != 2L * hidden * (INPUTS + 3) + 4) {
+            throw new IOException("NNUE weights file has the wrong size for a hidden layer of " + hidden);
+        }
+        var featureWeights = new short[INPUTS * hidden];
+        var hiddenBiases = new short[hidden];
+        var outputWeights = new short[2 * hidden];
+        var shorts = buffer.asShortBuffer();
+        shorts.get(featureWeights).get(hiddenBiases).get(outputWeights);
+        buffer.position(buffer.position() + 2 * shorts.position());
+        return new Network(hidden, featureWeights, hiddenBiases, outputWeights, buffer.getInt());
+    }
+
+    public void save(Path file) throws IOException {
+        var buffer = ByteBuffer.allocate(HEADER_BYTES + 2 * hidden * (INPUTS + 3) + 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(hidden);
+        var shorts = buffer.asShortBuffer();
+        shorts.put(featureWeights).put(hiddenBiases).put(outputWeights);
+        buffer.position(buffer.position() + 2 * shorts.position());
+        buffer.putInt(outputBias);
+        Files.write(file, buffer.array());
+    }
+
+    public int getHiddenSize() {
+        return hidden;
+    }
+
+    /**
+     * @return the feature for a piece on a square, as seen by perspective. Each side sees
+     * its own pieces as the first six kinds and the board from its own back rank.
+     */
+    static int feature(ChessGame.TeamColor perspective, ChessPiece piece, int square) {
+        boolean own = piece.getTeamColor() == perspective;
+        int kind = (own ? 0 : 6) + piece.getPieceType().ordinal();
+        int relative = perspective == ChessGame.TeamColor.WHITE ? square : square ^ 56;
+        return kind * 64 + relative;
+    }
+
+    /**
+     * @param activations scratch space for 2 * hidden values
+     * @return the score in centipawns for the side whose accumulator is us
+     */
+    int evaluate(short[] us, short[] them, int[] activations) {
+        // widened to int first: HotSpot vectorizes the int loops below, but not a
+        // reduction that widens shorts as it goes
+        for (int i = 0; i < hidden; i++) {
+            activations[i] = us[i];
+        }
+        for (int i = 0; i < hidden; i++) {
+            activations[hidden + i] = them[i];
+        }
+        int sum = 0; // trained output weights are small enough that this stays within an int
+        for (int i = 0; i < activations.length; i++) {
+            sum += Math.min(Math.max(activations[i], 0), QA) * wideOutputWeights[i];
+        }
+        return (int) ((long) (sum + outputBias) * SCALE / (QA * QB));
+    }
+}
@@ -0,0 +1,84 @@
+package chess.engine;
+
+import chess.BoardListener;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+/**
+ * Scores positions with a {@link Network}. The evaluator listens to the board of the
+ * game it's attached to and adds or subtracts one weight column per piece change, so
+ * making or unmaking a move costs a few vector additions and evaluating costs one pass
+ * over the hidden layer, however many pieces are on the board.
+ * <p>
+ * The network can be shared between evaluators; the accumulators can't.
+ */
+public final class NnueEvaluator implements PositionEvaluator, BoardListener {
+
+    private static final ChessGame.TeamColor[] TEAMS = ChessGame.TeamColor.values();
+
+    private final Network network;
+    private final short[][] accumulators; // [perspective][neuron]
+    private final int[] activations;
+    private ChessBoard board;
+
+    public NnueEvaluator(Network network) {
+        this.network = network;
+        accumulators = new short[2][network.hidden];
+        activations = new int[2 * network.hidden];
+    }
+
+    @Override
+    public void attach(ChessGame game) {
+        if (board != null) {
+            board.setListener(null);
+        }
+        board = game.getBoard();
+        board.setListener(this);
+        for (var accumulator : accumulators) {
+            System.arraycopy(network.hiddenBiases, 0, accumulator, 0, network.hidden);
+        }
+        for (int square = 0; square < 64; square++) {
+            var piece = board.pieceAt(square);
+            if (piece != null) {
+                pieceAdded(piece, square);
+            }
+        }
+    }
+
+    /**
+     * Attaches to game first, if it isn't the game attached to already
+     */
+    @Override
+    public int evaluate(ChessGame game) {
+        if (game.getBoard() != board) {
+            attach(game);
+        }
+        int us = game.getTeamTurn().ordinal();
+        return network.evaluate(accumulators[us], accumulators[1 - us], activations);
+    }
+
+    @Override
+    public void pieceAdded(ChessPiece piece, int square) {
+        for (var perspective : TEAMS) {
+            var accumulator = accumulators[perspective.ordinal()];
+            var weights = network.featureWeights;
+            int offset = Network.feature(perspective, piece, square) * network.hidden;
+            for (int i = 0; i < accumulator.length; i++) {
+                accumulator[i] += weights[offset + i];
+            }
+        }
+    }
+
+    @Override
+    public void pieceRemoved(ChessPiece piece, int square) {
+        for (var perspective : TEAMS) {
+            var accumulator = accumulators[perspective.ordinal()];
+            var weights = network.featureWeights;
+            int offset = Network.feature(perspective, piece, square) * network.hidden;
+            for (int i = 0; i < accumulator.length; i++) {
+                accumulator[i] -= weights[offset + i];
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package chess.engine;
+
+import chess.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * An opening book read straight from a memory-mapped file, so a book of any size costs
+ * no heap and no loading time. Only the pages a lookup touches are read from disk.
+ * <p>
+ * The file is a Polyglot {@code .bin} book: 16-byte big-endian entries of position
+ * key, move, weight and a learning field, sorted by key (unsigned). A lookup
+ * binary-searches for the position's first entry and reads the run that follows. Moves
+ * are encoded the Polyglot way too, castling included as the king taking its own rook.
+ * <p>
+ * The position keys are Polyglot's own, from {@link #polyglotKey}, so books built by
+ * other tools work here and books built with {@link #write} work elsewhere. Every move
+ * read back is checked against the legal moves, so a key collision can't produce an
+ * illegal move.
+ */
+public final class OpeningBook {
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int CHUNK_SHIFT = 26; // entries per mapping, so each one stays under 2 GB
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final int MAX_WEIGHT = 0xFFFF;
+    // indexed by the Polyglot promotion field, 0 for none
+    private static final ChessPiece.PieceType[] PROMOTIONS = {null, ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN};
+
+    private final MappedByteBuffer[] chunks;
+    private final long entries;
+
+    private OpeningBook(MappedByteBuffer[] chunks, long entries) {
+        this.chunks = chunks;
+        this.entries = entries;
+    }
+
+    public static OpeningBook open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if (bytes % ENTRY_BYTES != 0) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            long entries = bytes / ENTRY_BYTES;
+            var chunks = new MappedByteBuffer[(int) ((entries + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = ((long) i << CHUNK_SHIFT) * ENTRY_BYTES;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(bytes - start,
+                        (long) ENTRY_BYTES << CHUNK_SHIFT));
+            }
+            return new OpeningBook(chunks, entries); // the mappings stay valid after the channel closes
+        }
+    }
+
+    /**
+     * @return how many entries the book has
+     */
+    public long size() {
+        return entries;
+    }
+
+    /**
+     * @return the book's moves for the position, most weighted first, leaving out any that
+     * aren't legal there
+     */
+    public List<BookMove> getMoves(ChessGame game) {
+        long key = polyglotKey(game);
+        var legal = game.validMoves(game.getTeamTurn());
+        var moves = new ArrayList<BookMove>();
+        for (long entry = firstEntry(key); entry < entries && keyAt(entry) == key; entry++) {
+            var chunk = chunks[(int) (entry >>> CHUNK_SHIFT)];
+            int offset = (int) (entry & CHUNK_MASK) * ENTRY_BYTES;
+            int weight = chunk.getShort(offset + 10) & 0xFFFF;
+            var move = decode(game.getBoard(), chunk.getShort(offset + 8) & 0xFFFF);
+            if (weight > 0 && legal.contains(move)) {
+                moves.add(new BookMove(move, weight));
+            }
+        }
+        moves.sort(Comparator.comparingInt(BookMove::weight).reversed());
+        return moves;
+    }
+
+    /**
+     * @return one of the book's moves for the position, chosen with probability in
+     * proportion to its weight, or null if the position isn't in the book
+     */
+    public ChessMove pickMove(ChessGame game, RandomGenerator random) {
+        var moves = getMoves(game);
+        int total = 0;
+        for (var move : moves) {
+            total += move.weight();
+        }
+        if (total == 0) {
+            return null;
+        }
+        int pick = random.nextInt(total);
+        for (var move : moves) {
+            pick -= move.weight();
+            if (pick < 0) {
+                return move.move();
+            }
+        }
+        throw new AssertionError("pick is below the total weight");
+    }
+
+    /**
+     * Writes a book of every position reached in the given games, each played from the
+     * starting position. A move's weight is how many of the games played it from that
+     * position.
+     *
+     * @throws IllegalArgumentException if a game has an illegal move
+     */
+    public static void write(Path file, Collection<? extends List<ChessMove>> games) throws IOException {
+        var counts = new TreeMap<Long, Map<Integer, Integer>>(Long::compareUnsigned);
+        for (var line : games) {
+            var game = new ChessGame();
+            for (var move : line) {
+                counts.computeIfAbsent(polyglotKey(game), key -> new HashMap<>())
+                        .merge(encode(game.getBoard(), move), 1, Integer::sum);
+                try {
+                    game.makeMove(move);
+                } catch (InvalidMoveException ex) {
+                    throw new IllegalArgumentException("Illegal move in book game: " + move, ex);
+                }
+            }
+        }
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (var position : counts.entrySet()) {
+                var moves = new ArrayList<>(position.getValue().entrySet());
+                moves.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed());
+                for (var move : moves) {
+                    out.writeLong(position.getKey());
+                    out.writeShort(move.getKey());
+                    out.writeShort(Math.min(move.getValue(), MAX_WEIGHT));
+                    out.writeInt(0); // learning data, unused
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the key the position is stored under in a Polyglot book
+     */
+    public static long polyglotKey(ChessGame game) {
+        return game.getPolyglotKey();
+    }
+
+    /**
+     * @return the index of the first entry with a key at least key, comparing unsigned
+     */
+    private long firstEntry(long key) {
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(long entry) {
+        return chunks[(int) (entry >>> CHUNK_SHIFT)].getLong((int) (entry & CHUNK_MASK) * ENTRY_BYTES);
+    }
+
+    private static ChessMove decode(ChessBoard board, int move) {
+        var from = ChessPosition.of((move >>> 9 & 7) + 1, (move >>> 6 & 7) + 1);
+        var to = ChessPosition.of((move >>> 3 & 7) + 1, (move & 7) + 1);
+        int promotion = move >>> 12 & 7;
+        var piece = board.getPiece(from);
+        var target = board.getPiece(to);
+        if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING && target != null
+                && target.getPieceType() == ChessPiece.PieceType.ROOK && target.getTeamColor() == piece.getTeamColor()) {
+            // castling, stored as the king taking its own rook
+            to = ChessPosition.of(from.getRow(), to.getColumn() > from.getColumn() ? 7 : 3);
+        }
+        return new ChessMove(from, to, promotion < PROMOTIONS.length ? PROMOTIONS[promotion] : null);
+    }
+
+    private static int encode(ChessBoard board, ChessMove move) {
+        var from = move.getStartPosition();
+        var to = move.getEndPosition();
+        int toColumn = to.getColumn();
+        var piece = board.getPiece(from);
+        if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING
+                && Math.abs(toColumn - from.getColumn()) == 2) {
+            toColumn = toColumn > from.getColumn() ? 8 : 1; // castling goes to the rook's square
+        }
+        int promotion = move.getPromotionPiece() == null ? 0
+                : Arrays.asList(PROMOTIONS).indexOf(move.getPromotionPiece());
+        return promotion << 12 | (from.getRow() - 1) << 9 | (from.getColumn() - 1) << 6
+                | (to.getRow() - 1) << 3 | (toColumn - 1);
+    }
+
+    /**
+     * @param weight how often the move should be picked relative to the position's other moves
+     */
+    public record BookMove(ChessMove move, int weight) {
+    }
+}
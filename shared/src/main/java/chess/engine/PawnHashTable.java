@@ -0,0 +1,71 @@
+package chess.engine;
+
+/**
+ * A small always-replace cache of pawn structure scores, keyed by the board's pawn hash.
+ * Pawns move much less often than other pieces, so most positions a search visits share
+ * their pawn structure with many others and the lookup hits nearly every time.
+ * <p>
+ * Scores are stored as a middlegame and an endgame score packed into one int. The table
+ * isn't thread-safe; each {@link Evaluator} has its own.
+ */
+public final class PawnHashTable {
+
+    /** returned by {@link #probe} when the pawn structure isn't stored */
+    static final int MISS = Integer.MIN_VALUE;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param entries how many pawn structures to keep, rounded down to a power of two
+     */
+    public PawnHashTable(int entries) {
+        if (entries < 1) {
+            throw new IllegalArgumentException("Table must have at least one entry");
+        }
+        int size = Integer.highestOneBit(entries);
+        keys = new long[size];
+        scores = new int[size];
+        mask = size - 1;
+        // a key of 0 is a board with no pawns, which scores 0, so the empty table is already right for it
+    }
+
+    int probe(long key) {
+        int index = (int) key & mask;
+        if (keys[index] == key) {
+            hits++;
+            return scores[index];
+        }
+        misses++;
+        return MISS;
+    }
+
+    void store(long key, int score) {
+        int index = (int) key & mask;
+        keys[index] = key;
+        scores[index] = score;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    static int pack(int midgame, int endgame) {
+        return (midgame << 16) + (short) endgame;
+    }
+
+    static int midgame(int packed) {
+        return (packed + 0x8000) >> 16;
+    }
+
+    static int endgame(int packed) {
+        return (short) packed;
+    }
+}
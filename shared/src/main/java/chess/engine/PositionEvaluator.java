@@ -0,0 +1,25 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+/**
+ * Scores positions for a {@link Searcher}. A searcher calls {@link #attach} once on its
+ * private copy of the game before searching it, so an evaluator that keeps incremental
+ * state can start following that game's board.
+ * <p>
+ * Evaluators aren't expected to be thread-safe; each searcher needs its own.
+ */
+public interface PositionEvaluator {
+
+    /**
+     * @return the score in centipawns, from the point of view of the team to move
+     */
+    int evaluate(ChessGame game);
+
+    /**
+     * Starts following game, which will then be changed only through moves made and
+     * unmade on it
+     */
+    default void attach(ChessGame game) {
+    }
+}
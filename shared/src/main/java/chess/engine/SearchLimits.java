@@ -0,0 +1,33 @@
+package chess.engine;
+
+/**
+ * How far a search may go. It stops at whichever limit it reaches first, and always
+ * finishes at least a one-ply search so there is a move to play.
+ *
+ * @param maxDepth  deepest iteration to start, in plies
+ * @param maxNodes  positions to visit before stopping
+ * @param maxMillis wall-clock time before stopping
+ */
+public record SearchLimits(int maxDepth, long maxNodes, long maxMillis) {
+
+    public static final int MAX_DEPTH = 64;
+
+    public SearchLimits {
+        if (maxDepth < 1 || maxNodes < 1 || maxMillis < 1) {
+            throw new IllegalArgumentException("Search limits must be positive");
+        }
+        maxDepth = Math.min(maxDepth, MAX_DEPTH);
+    }
+
+    public static SearchLimits ofDepth(int depth) {
+        return new SearchLimits(depth, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public static SearchLimits ofNodes(long nodes) {
+        return new SearchLimits(MAX_DEPTH, nodes, Long.MAX_VALUE);
+    }
+
+    public static SearchLimits ofMillis(long millis) {
+        return new SearchLimits(MAX_DEPTH, Long.MAX_VALUE, millis);
+    }
+}
@@ -0,0 +1,21 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * @param bestMove           the move to play, or null if the side to move has none
+ * @param score              centipawns from the mover's point of view; see {@link Searcher#isMateScore}
+ * @param depth              deepest iteration that finished
+ * @param nodes              positions visited, by every thread that searched
+ * @param hashfull           how full the transposition table is afterwards, in parts per thousand
+ * @param principalVariation the line both sides are expected to play, starting with bestMove
+ */
+public record SearchResult(ChessMove bestMove, int score, int depth, long nodes, long millis, int hashfull,
+                           List<ChessMove> principalVariation) {
+
+    public long nodesPerSecond() {
+        return nodes * 1000 / Math.max(1, millis);
+    }
+}
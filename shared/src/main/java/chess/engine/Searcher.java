@@ -0,0 +1,440 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Picks a move with a negamax alpha-beta search. Iterative deepening searches one ply
+ * deeper each round until a limit runs out, and keeps the best move of the last round
+ * that finished. Each leaf is extended with a quiescence search of captures, so a
+ * position is never scored halfway through an exchange.
+ * <p>
+ * Moves are tried best-first: the best move found for the position before (at the
+ * root, the previous round's), then captures by most valuable victim and least
+ * valuable attacker (MVV-LVA), then the two quiet moves that most recently caused a
+ * cutoff at the same ply (killers), then the rest by how often they've caused cutoffs
+ * anywhere (history). Captures that lose material once the recaptures are played out
+ * (see {@link chess.ChessBoard#staticExchange}) go last.
+ * <p>
+ * Results are remembered in a {@link TranspositionTable}, so a position reached again,
+ * by another move order or in the next round, is looked up instead of searched. Its
+ * best move is tried first, and a deep enough result ends the search of that node.
+ * <p>
+ * Draws the game would end on score 0. The searched copy keeps the game's move
+ * history and halfmove clock, so a position counts as repeated if it came up once
+ * before on the searched line, or twice in the game as a whole, and the fifty-move
+ * rule counts the plies played before the search started.
+ * <p>
+ * A searcher keeps its killer and history tables between calls and is not thread safe;
+ * use one per thread. The transposition table can be shared between searchers. A
+ * searcher only starts a new table generation before each search on a table it made
+ * itself; a table passed in is aged by whoever owns it, see {@link TranspositionTable}.
+ */
+public class Searcher {
+
+    public static final int MATE = 30_000;
+    private static final int INFINITY = 32_000;
+    private static final int MAX_PLY = 128;
+    private static final int CHECK_EVERY = 1024; // nodes between clock checks
+
+    // move ordering bands, highest first
+    private static final int HASH_MOVE = 1 << 30;
+    private static final int CAPTURE = 1 << 24;
+    private static final int FIRST_KILLER = 1 << 23;
+    private static final int SECOND_KILLER = FIRST_KILLER - 1;
+
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    private final int[][] moveScores = new int[MAX_PLY + 1][];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[2 * 64][64]; // [team * 64 + from][to]
+    private final long[] pathKeys = new long[MAX_PLY + 1];
+    private final TranspositionTable table;
+    private final PositionEvaluator evaluator;
+    private final boolean ownsTable;
+
+    private ChessGame game;
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+    private boolean stopped;
+    private AtomicBoolean stopSignal; // set by another thread to end the search early, or null
+    private int iteration;
+    private int rootBest;
+
+    public Searcher() {
+        this(new TranspositionTable(16), new Evaluator(), true);
+    }
+
+    /**
+     * @param table where to remember results; other searchers may use it at the same time
+     */
+    public Searcher(TranspositionTable table) {
+        this(table, new Evaluator());
+    }
+
+    /**
+     * @param evaluator scores the leaves; it mustn't be used by any other searcher
+     */
+    public Searcher(TranspositionTable table, PositionEvaluator evaluator) {
+        this(table, evaluator, false);
+    }
+
+    private Searcher(TranspositionTable table, PositionEvaluator evaluator, boolean ownsTable) {
+        this.table = table;
+        this.evaluator = evaluator;
+        this.ownsTable = ownsTable;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            moveLists[ply] = new MoveList();
+            moveScores[ply] = new int[256];
+        }
+    }
+
+    /**
+     * Searches the position for the team whose turn it is. The game itself is left untouched.
+     */
+    public SearchResult search(ChessGame position, SearchLimits limits) {
+        if (ownsTable) {
+            table.newSearch();
+        }
+        return search(position, limits, 1, null);
+    }
+
+    /**
+     * Searches as one of several threads working on the same position
+     *
+     * @param firstDepth the depth to start deepening from
+     * @param stopSignal checked every so often; the search ends once it's set
+     */
+    SearchResult search(ChessGame position, SearchLimits limits, int firstDepth, AtomicBoolean stopSignal) {
+        long start = System.nanoTime();
+        game = new ChessGame(position);
+        evaluator.attach(game);
+        this.stopSignal = stopSignal;
+        nodes = 0;
+        maxNodes = limits.maxNodes();
+        deadline = limits.maxMillis() >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE
+                : start + limits.maxMillis() * 1_000_000;
+        stopped = false;
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = PackedMove.NONE;
+            plyKillers[1] = PackedMove.NONE;
+        }
+        for (int[] row : history) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 3; // keep a little of what earlier searches learned
+            }
+        }
+
+        int bestMove = PackedMove.NONE;
+        int bestScore = 0;
+        int completedDepth = 0;
+        List<ChessMove> line = List.of();
+        rootBest = PackedMove.NONE;
+        for (int depth = firstDepth; depth <= limits.maxDepth(); depth++) {
+            iteration = depth;
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if (stopped) {
+                break;
+            }
+            bestMove = rootBest;
+            bestScore = score;
+            completedDepth = depth;
+            line = principalVariation(bestMove, depth);
+            if (bestMove == PackedMove.NONE || isMateScore(score)) {
+                break; // no moves, or the result can't change
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        var move = bestMove == PackedMove.NONE ? null : PackedMove.toChessMove(bestMove);
+        return new SearchResult(move, bestScore, completedDepth, nodes, millis, table.hashfull(), line);
+    }
+
+    /**
+     * Follows the stored best moves from the root, checking each is legal in case its
+     * entry was overwritten by another position's
+     */
+    private List<ChessMove> principalVariation(int bestMove, int depth) {
+        var line = new ArrayList<ChessMove>();
+        var moves = moveLists[0];
+        int move = bestMove;
+        while (move != PackedMove.NONE && line.size() < depth) {
+            game.generateMoves(moves);
+            if (!contains(moves, move)) {
+                break;
+            }
+            line.add(PackedMove.toChessMove(move));
+            game.doMove(move);
+            long entry = table.probe(game.getZobristKey());
+            move = entry == TranspositionTable.MISS ? PackedMove.NONE : TranspositionTable.move(entry);
+        }
+        for (int i = 0; i < line.size(); i++) {
+            game.undoMove();
+        }
+        return line;
+    }
+
+    private static boolean contains(MoveList moves, int move) {
+        for (int i = 0; i < moves.size(); i++) {
+            if (moves.get(i) == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if score means a forced mate for one side rather than a material edge
+     */
+    public static boolean isMateScore(int score) {
+        return Math.abs(score) > MATE - MAX_PLY;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        pathKeys[ply] = game.getZobristKey();
+        if (ply > 0 && (isRepetition(ply) || game.countRepetitions() >= 2)) {
+            return 0;
+        }
+        boolean inCheck = game.isInCheck(game.getTeamTurn());
+        if (ply > 0 && game.isFiftyMoveRule() && !(inCheck && isCheckmate(ply))) {
+            return 0;
+        }
+        if (inCheck) {
+            depth++; // look past checks, they're forcing
+        }
+        if (depth <= 0 || ply >= MAX_PLY) {
+            return quiesce(ply, alpha, beta);
+        }
+        if (outOfBudget()) {
+            return 0;
+        }
+
+        long entry = table.probe(pathKeys[ply]);
+        int hashMove = PackedMove.NONE;
+        if (entry != TranspositionTable.MISS) {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        var moves = moveLists[ply];
+        game.generateMoves(moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        int[] scores = scoreMoves(moves, ply, ply == 0 && rootBest != PackedMove.NONE ? rootBest : hashMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = PackedMove.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, scores, i);
+            game.doMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            game.undoMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootBest = move;
+                }
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                if (!isCapture(move)) {
+                    rememberCutoff(move, depth, ply);
+                }
+                break;
+            }
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(pathKeys[ply], bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Mate scores count plies from the root, but a stored entry can be reached at any
+     * ply, so they're stored as plies from the entry's own position instead
+     */
+    private static int toTable(int score, int ply) {
+        return score > MATE - MAX_PLY ? score + ply : score < -(MATE - MAX_PLY) ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score > MATE - MAX_PLY ? score - ply : score < -(MATE - MAX_PLY) ? score + ply : score;
+    }
+
+    /**
+     * Searches captures and promotions only, until the position is quiet. The side to
+     * move may also "stand pat" on the static score instead of capturing, so captures
+     * that lose material are skipped. In check there's no standing pat, so every
+     * evasion is searched.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        if (outOfBudget()) {
+            return 0;
+        }
+        boolean inCheck = game.isInCheck(game.getTeamTurn());
+        int best = -INFINITY;
+        if (!inCheck) {
+            best = evaluator.evaluate(game);
+            if (best >= beta || ply >= MAX_PLY) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        var moves = moveLists[ply];
+        game.generateMoves(moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        if (ply >= MAX_PLY) {
+            return evaluator.evaluate(game);
+        }
+        int[] scores = scoreMoves(moves, ply, PackedMove.NONE);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, scores, i);
+            if (!inCheck && scores[i] < CAPTURE) {
+                break; // sorted, so only quiet moves are left
+            }
+            game.doMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            game.undoMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private boolean outOfBudget() {
+        nodes++;
+        if (iteration == 1) {
+            return false; // the first round always finishes, so there's a move to play
+        }
+        if (nodes >= maxNodes) {
+            stopped = true;
+        } else if ((nodes & (CHECK_EVERY - 1)) == 0
+                && (System.nanoTime() >= deadline || (stopSignal != null && stopSignal.get()))) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private boolean isCheckmate(int ply) {
+        game.generateMoves(moveLists[ply]);
+        return moveLists[ply].isEmpty();
+    }
+
+    /**
+     * @return true if the position at ply already came up earlier on the current line,
+     * with the same side to move
+     */
+    private boolean isRepetition(int ply) {
+        for (int earlier = ply - 2; earlier >= 0; earlier -= 2) {
+            if (pathKeys[earlier] == pathKeys[ply]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] scoreMoves(MoveList moves, int ply, int first) {
+        if (moveScores[ply].length < moves.size()) {
+            moveScores[ply] = new int[moves.size()];
+        }
+        int[] scores = moveScores[ply];
+        int team = game.getTeamTurn().ordinal();
+        var board = game.getBoard();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (move == first) {
+                scores[i] = HASH_MOVE;
+            } else if (isCapture(move) || PackedMove.kind(move) == PackedMove.PROMOTION) {
+                var victim = board.pieceAt(PackedMove.to(move));
+                int victimValue = victim == null ? Evaluator.PIECE_VALUES[5] : Evaluator.PIECE_VALUES[victim.getPieceType().ordinal()];
+                var promotion = PackedMove.promotionType(move);
+                if (promotion != null) {
+                    victimValue += Evaluator.PIECE_VALUES[promotion.ordinal()];
+                }
+                var attacker = board.pieceAt(PackedMove.from(move)).getPieceType();
+                int attackerValue = Evaluator.PIECE_VALUES[attacker.ordinal()];
+                int exchange = 0;
+                if (promotion != null || attackerValue > victimValue) {
+                    // it might lose material if recaptured, so play the exchange out
+                    exchange = board.staticExchange(PackedMove.from(move), PackedMove.to(move), promotion);
+                }
+                scores[i] = exchange < 0 ? exchange : CAPTURE + victimValue * 16 - attackerValue / 8;
+            } else if (move == killers[ply][0]) {
+                scores[i] = FIRST_KILLER;
+            } else if (move == killers[ply][1]) {
+                scores[i] = SECOND_KILLER;
+            } else {
+                scores[i] = Math.min(history[team * 64 + PackedMove.from(move)][PackedMove.to(move)], SECOND_KILLER - 1);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Swaps the best scored move from i onwards into slot i and returns it
+     */
+    private static int pickNext(MoveList moves, int[] scores, int i) {
+        int best = i;
+        for (int j = i + 1; j < moves.size(); j++) {
+            if (scores[j] > scores[best]) {
+                best = j;
+            }
+        }
+        if (best != i) {
+            int score = scores[i];
+            scores[i] = scores[best];
+            scores[best] = score;
+            moves.swap(i, best);
+        }
+        return moves.get(i);
+    }
+
+    private void rememberCutoff(int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int team = game.getTeamTurn().ordinal();
+        int[] counts = history[team * 64 + PackedMove.from(move)];
+        counts[PackedMove.to(move)] += depth * depth;
+    }
+
+    private boolean isCapture(int move) {
+        return PackedMove.kind(move) == PackedMove.EN_PASSANT || game.getBoard().pieceAt(PackedMove.to(move)) != null;
+    }
+}
@@ -0,0 +1,445 @@
+package chess.engine;
+
+import chess.*;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds endgame tables for {@link Tablebases} by retrograde analysis.
+ * <p>
+ * Every position of the material is first looked at once with the ordinary move
+ * generator. Mates are marked, and each position counts its moves that keep the
+ * material. Moves that capture or promote lead into smaller tables, built first, so
+ * their results are known at once. Then the analysis works backwards from the mates,
+ * one ply at a time. For each position resolved at the last ply, it un-makes the
+ * moves that could have led there. A predecessor of a lost position is won. A
+ * predecessor of a won position has one fewer move left to try, and once none are
+ * left it is lost. Whatever is never resolved is a draw.
+ * <p>
+ * Each pass is split over index ranges on a {@link ForkJoinPool}. Threads update
+ * shared entries with atomic byte operations, so the passes need no locks.
+ * <p>
+ * Run from the command line with a directory and the tables to build:
+ * <pre>
+ *     java chess.engine.TablebaseGenerator tables KQK KRK KPK KBNK
+ * </pre>
+ */
+public final class TablebaseGenerator {
+
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final int LEAF = 1 << 12; // entries per task
+    private static final byte CANNOT_LOSE = -1; // in remaining: a move into a smaller table draws
+
+    private final Path directory;
+    private final ForkJoinPool pool;
+    private final Tablebases tables;
+    private final Progress progress;
+
+    /**
+     * Told about each table once it's written
+     */
+    @FunctionalInterface
+    public interface Progress {
+        void built(String signature, int entries, long millis);
+    }
+
+    public TablebaseGenerator(Path directory, ForkJoinPool pool) throws IOException {
+        this(directory, pool, (signature, entries, millis) -> { });
+    }
+
+    public TablebaseGenerator(Path directory, ForkJoinPool pool, Progress progress) throws IOException {
+        this.directory = directory;
+        this.pool = pool;
+        this.progress = progress;
+        Files.createDirectories(directory);
+        tables = Tablebases.open(directory);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: TablebaseGenerator <directory> <material>...   e.g. tables KQK KPK");
+            return;
+        }
+        var generator = new TablebaseGenerator(Path.of(args[0]), ForkJoinPool.commonPool(),
+                (signature, entries, millis) -> System.out.printf("%s: %d entries in %d ms%n", signature, entries, millis));
+        for (int i = 1; i < args.length; i++) {
+            generator.generate(args[i]);
+        }
+    }
+
+    /**
+     * Builds the table for the material, and every smaller table it leads into, unless
+     * the directory has them already
+     */
+    public void generate(String signature) throws IOException {
+        var canonical = Tablebases.canonical(signature);
+        if (tables.covers(canonical)) {
+            return;
+        }
+        validate(canonical);
+        for (var smaller : successors(canonical)) {
+            generate(smaller);
+        }
+        long start = System.nanoTime();
+        var values = new Build(canonical).run();
+        var file = directory.resolve(canonical + Tablebases.EXTENSION);
+        Tablebases.write(file, canonical, values);
+        tables.add(file);
+        progress.built(canonical, values.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void validate(String signature) {
+        var pieces = Tablebases.pieces(signature);
+        if (pieces.length > Tablebases.MAX_PIECES) {
+            throw new IllegalArgumentException("Tables go up to " + Tablebases.MAX_PIECES + " pieces: " + signature);
+        }
+        int kings = 0;
+        for (var piece : pieces) {
+            if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+                kings++;
+            }
+        }
+        if (kings != 2 || pieces[0].getPieceType() != ChessPiece.PieceType.KING) {
+            throw new IllegalArgumentException("Each team needs exactly one king: " + signature);
+        }
+    }
+
+    /**
+     * @return the materials a capture or promotion leads to
+     */
+    private static Set<String> successors(String signature) {
+        var successors = new LinkedHashSet<String>();
+        var pieces = Tablebases.pieces(signature);
+        for (int i = 0; i < pieces.length; i++) {
+            var type = pieces[i].getPieceType();
+            if (type == ChessPiece.PieceType.KING) {
+                continue;
+            }
+            successors.add(rebuild(pieces, i, null));
+            if (type == ChessPiece.PieceType.PAWN) {
+                for (var promotion : new ChessPiece.PieceType[]{ChessPiece.PieceType.QUEEN,
+                        ChessPiece.PieceType.ROOK, ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT}) {
+                    successors.add(rebuild(pieces, i, ChessPiece.of(pieces[i].getTeamColor(), promotion)));
+                }
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * @return the signature with piece i replaced, or taken off if replacement is null
+     */
+    private static String rebuild(ChessPiece[] pieces, int i, ChessPiece replacement) {
+        var board = new ChessBoard();
+        for (int j = 0; j < pieces.length; j++) {
+            var piece = j == i ? replacement : pieces[j];
+            if (piece != null) {
+                board.addPiece(ChessPosition.of(j / 8 + 1, j % 8 + 1), piece); // any free square will do
+            }
+        }
+        return Tablebases.signature(board);
+    }
+
+    /**
+     * The working state for one table
+     */
+    private final class Build {
+        final String signature;
+        final ChessPiece[] pieces;
+        final int size;
+        final byte[] values; // the result so far, 0 until resolved (and for draws)
+        final byte[] remaining; // moves within the table not yet known to lose, or CANNOT_LOSE
+        final byte[] externalWin; // plies to mate through the fastest winning capture or promotion, 0 for none
+        final byte[] lossFloor; // plies to be mated after the slowest losing capture or promotion
+        final AtomicInteger furthest = new AtomicInteger(); // the deepest ply anything is resolved at
+        final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+        Build(String signature) {
+            this.signature = signature;
+            pieces = Tablebases.pieces(signature);
+            size = Tablebases.size(pieces.length);
+            values = new byte[size];
+            remaining = new byte[size];
+            externalWin = new byte[size];
+            lossFloor = new byte[size];
+        }
+
+        byte[] run() {
+            pool.invoke(new Pass(0, size, 0));
+            for (int ply = 1; ply <= furthest.get() + 1; ply++) {
+                pool.invoke(new Pass(0, size, ply));
+            }
+            return values;
+        }
+
+        /**
+         * Looks at one position before the retrograde passes start
+         */
+        void initialize(Worker worker, int index) {
+            if (!worker.setUp(index)) {
+                values[index] = Tablebases.ILLEGAL;
+                return;
+            }
+            var game = worker.game;
+            var turn = game.getTeamTurn();
+            if (game.isInCheck(Tablebases.opponent(turn))) {
+                values[index] = Tablebases.ILLEGAL;
+                return;
+            }
+            var moves = worker.moves;
+            game.generateMoves(moves);
+            if (moves.isEmpty()) {
+                values[index] = game.isInCheck(turn) ? Tablebases.loss(0) : 0;
+                return;
+            }
+            int internal = 0;
+            int fastestWin = Integer.MAX_VALUE;
+            int slowestLoss = 0;
+            boolean canDraw = false;
+            var board = game.getBoard();
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if (PackedMove.kind(move) != PackedMove.PROMOTION && board.pieceAt(PackedMove.to(move)) == null) {
+                    internal++;
+                    continue;
+                }
+                game.doMove(move);
+                var reply = tables.probe(game);
+                game.undoMove();
+                switch (reply.outcome()) {
+                    case LOSS -> fastestWin = Math.min(fastestWin, reply.plies() + 1);
+                    case WIN -> slowestLoss = Math.max(slowestLoss, reply.plies() + 1);
+                    case DRAW -> canDraw = true;
+                }
+            }
+            remaining[index] = canDraw ? CANNOT_LOSE : (byte) internal;
+            lossFloor[index] = (byte) Math.min(slowestLoss, Byte.MAX_VALUE);
+            if (fastestWin != Integer.MAX_VALUE) {
+                externalWin[index] = Tablebases.win(fastestWin);
+                furthest.accumulateAndGet(fastestWin, Math::max);
+            } else if (internal == 0 && !canDraw) {
+                values[index] = Tablebases.loss(slowestLoss);
+                furthest.accumulateAndGet(slowestLoss, Math::max);
+            }
+        }
+
+        /**
+         * Resolves what the positions found at the last ply decide, and any position
+         * whose winning capture takes this many plies
+         */
+        void retrograde(Worker worker, int index, int ply) {
+            if (externalWin[index] == ply) {
+                BYTES.compareAndSet(values, index, (byte) 0, Tablebases.win(ply));
+            }
+            byte value = values[index];
+            if (value == 0 || value == Tablebases.ILLEGAL || distance(value) != ply - 1) {
+                return;
+            }
+            worker.setUp(index);
+            int count = worker.predecessors();
+            for (int i = 0; i < count; i++) {
+                int predecessor = worker.predecessors[i];
+                if (values[predecessor] == Tablebases.ILLEGAL) {
+                    continue;
+                }
+                if (value < 0) {
+                    // the side to move here loses, so the side that moved here wins
+                    if (BYTES.compareAndSet(values, predecessor, (byte) 0, Tablebases.win(ply))) {
+                        furthest.accumulateAndGet(ply, Math::max);
+                    }
+                } else if (decrement(predecessor) == 0
+                        && externalWin[predecessor] == 0) {
+                    // every move from the predecessor loses; the slowest sets the distance
+                    int plies = Math.max(ply, lossFloor[predecessor]);
+                    if (BYTES.compareAndSet(values, predecessor, (byte) 0, Tablebases.loss(plies))) {
+                        furthest.accumulateAndGet(plies, Math::max);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return how many moves the entry has left to try, after taking one off
+         */
+        private int decrement(int index) {
+            // a compare-and-set loop, since C2 in JDK 21 gets getAndAdd on byte arrays wrong
+            byte count;
+            do {
+                count = (byte) BYTES.getVolatile(remaining, index);
+            } while (!BYTES.compareAndSet(remaining, index, count, (byte) (count - 1)));
+            return count - 1;
+        }
+
+        private static int distance(byte value) {
+            return value > 0 ? value : -value - 1;
+        }
+
+        /**
+         * One pass over a range of entries: the first look at each position for ply 0,
+         * retrograde analysis after that
+         */
+        private final class Pass extends RecursiveAction {
+            @Serial
+            private static final long serialVersionUID = 1L;
+
+            final int from;
+            final int to;
+            final int ply;
+
+            Pass(int from, int to, int ply) {
+                this.from = from;
+                this.to = to;
+                this.ply = ply;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > LEAF) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Pass(from, middle, ply), new Pass(middle, to, ply));
+                    return;
+                }
+                var worker = workers.get();
+                for (int index = from; index < to; index++) {
+                    if (ply == 0) {
+                        initialize(worker, index);
+                    } else {
+                        retrograde(worker, index, ply);
+                    }
+                }
+            }
+        }
+
+        /**
+         * A thread's own game to set positions up on
+         */
+        private final class Worker {
+            final ChessGame game = new ChessGame();
+            final MoveList moves = new MoveList();
+            final int[] squares = new int[pieces.length];
+            final int[] moved = new int[pieces.length];
+            final int[] predecessors = new int[256];
+            final int[] placed = new int[pieces.length];
+            int placedCount;
+
+            Worker() {
+                game.setBoard(new ChessBoard()); // an empty board has no castling rights
+            }
+
+            /**
+             * Puts the entry's position on the board
+             *
+             * @return false if the entry isn't a position: pieces sharing a square, a pawn
+             * on the first or last rank, or identical pieces out of order
+             */
+            boolean setUp(int index) {
+                for (int i = pieces.length - 1, rest = index >>> 1; i >= 0; i--, rest >>>= 6) {
+                    squares[i] = rest & 63;
+                }
+                for (int i = 0; i < pieces.length; i++) {
+                    for (int j = 0; j < i; j++) {
+                        if (squares[i] == squares[j]) {
+                            return false;
+                        }
+                    }
+                    if (i > 0 && pieces[i].equals(pieces[i - 1]) && squares[i] < squares[i - 1]) {
+                        return false;
+                    }
+                    if (pieces[i].getPieceType() == ChessPiece.PieceType.PAWN && (squares[i] < 8 || squares[i] >= 56)) {
+                        return false;
+                    }
+                }
+                var board = game.getBoard();
+                for (int i = 0; i < placedCount; i++) {
+                    board.removePiece(position(placed[i]));
+                }
+                for (int i = 0; i < pieces.length; i++) {
+                    board.addPiece(position(squares[i]), pieces[i]);
+                    placed[i] = squares[i];
+                }
+                placedCount = pieces.length;
+                game.setTeamTurn((index & 1) == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK);
+                return true;
+            }
+
+            /**
+             * Fills predecessors with the entries one move before the position set up:
+             * the other team to move, with one of its pieces back where it came from.
+             * Only moves that keep the material count, since the rest start in bigger tables.
+             *
+             * @return how many there are
+             */
+            int predecessors() {
+                var board = game.getBoard();
+                var mover = Tablebases.opponent(game.getTeamTurn());
+                int count = 0;
+                for (int i = 0; i < pieces.length; i++) {
+                    if (pieces[i].getTeamColor() != mover) {
+                        continue;
+                    }
+                    int square = squares[i];
+                    if (pieces[i].getPieceType() == ChessPiece.PieceType.PAWN) {
+                        int back = mover == ChessGame.TeamColor.WHITE ? -8 : 8;
+                        int from = square + back;
+                        if (from >= 8 && from < 56 && board.pieceAt(from) == null) {
+                            predecessors[count++] = entry(i, from, mover);
+                            int twoStepRank = mover == ChessGame.TeamColor.WHITE ? 3 : 4;
+                            if (square >>> 3 == twoStepRank && board.pieceAt(from + back) == null) {
+                                predecessors[count++] = entry(i, from + back, mover);
+                            }
+                        }
+                        continue;
+                    }
+                    // these pieces move the same both ways, so where they could go is where they could have come from
+                    for (var move : board.getPiece(position(square)).pieceMoves(board, position(square))) {
+                        var origin = move.getEndPosition();
+                        if (board.getPiece(origin) == null) {
+                            predecessors[count++] = entry(i, (origin.getRow() - 1) * 8 + origin.getColumn() - 1, mover);
+                        }
+                    }
+                }
+                return count;
+            }
+
+            /**
+             * @return the entry with piece i on square instead, and turn to move
+             */
+            private int entry(int piece, int square, ChessGame.TeamColor turn) {
+                System.arraycopy(squares, 0, moved, 0, squares.length);
+                moved[piece] = square;
+                // keep identical pieces in square order, as the index expects
+                for (int i = piece; i > 0 && pieces[i].equals(pieces[i - 1]) && moved[i] < moved[i - 1]; i--) {
+                    swap(i, i - 1);
+                }
+                for (int i = piece; i + 1 < pieces.length && pieces[i].equals(pieces[i + 1]) && moved[i] > moved[i + 1]; i++) {
+                    swap(i, i + 1);
+                }
+                int index = 0;
+                for (int on : moved) {
+                    index = index << 6 | on;
+                }
+                return index << 1 | turn.ordinal();
+            }
+
+            private void swap(int i, int j) {
+                int square = moved[i];
+                moved[i] = moved[j];
+                moved[j] = square;
+            }
+
+            private static ChessPosition position(int square) {
+                return ChessPosition.of(square / 8 + 1, square % 8 + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package chess.engine;
+
+import chess.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exact results for small endgames, read from tables built by {@link TablebaseGenerator}.
+ * A table holds every position of one material balance, such as KQK or KPK (white's
+ * pieces, then black's), with the number of plies to mate under perfect play. Tables
+ * are memory-mapped, so they cost no heap, and the OS keeps the pages that get probed
+ * cached.
+ * <p>
+ * A table for the stronger side as white also answers the same material with the
+ * colors reversed, by looking up the mirrored position. Castling and en passant rights
+ * are ignored; endgames this small rarely have either.
+ */
+public final class Tablebases {
+
+    /** tables cover at most this many pieces, kings included */
+    public static final int MAX_PIECES = 4;
+    static final String EXTENSION = ".ctb";
+    static final byte ILLEGAL = Byte.MIN_VALUE;
+
+    private static final int MAGIC = 'C' << 24 | 'T' << 16 | 'B' << 8 | '1';
+    private static final int HEADER_BYTES = 16;
+    private static final int SIGNATURE_BYTES = HEADER_BYTES - 4;
+    // letters in PieceType ordinal order: king, queen, bishop, knight, rook, pawn
+    private static final String LETTERS = "KQBNRP";
+    private static final int[] STRENGTH = {0, 9, 3, 3, 5, 1};
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private final Map<String, MappedByteBuffer> tables = new HashMap<>();
+
+    private Tablebases() {
+    }
+
+    /**
+     * Maps every table in the directory
+     */
+    public static Tablebases open(Path directory) throws IOException {
+        var tablebases = new Tablebases();
+        if (Files.isDirectory(directory)) {
+            try (var files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+                for (var file : files) {
+                    tablebases.add(file);
+                }
+            }
+        }
+        return tablebases;
+    }
+
+    /**
+     * @return true if there's a table for the material, in either color order
+     */
+    public boolean covers(String signature) {
+        var canonical = canonical(signature);
+        return isBareKings(canonical) || tables.containsKey(canonical);
+    }
+
+    /**
+     * @return the result with perfect play for the team to move, or null if there's no
+     * table for the position's material
+     */
+    public Result probe(ChessGame game) {
+        var board = game.getBoard();
+        if (Long.bitCount(board.getOccupied()) > MAX_PIECES) {
+            return null;
+        }
+        var signature = signature(board);
+        var canonical = canonical(signature);
+        if (isBareKings(canonical)) {
+            return new Result(Outcome.DRAW, 0);
+        }
+        var table = tables.get(canonical);
+        if (table == null) {
+            return null;
+        }
+        boolean mirror = !canonical.equals(signature);
+        int index = index(pieces(canonical), board, game.getTeamTurn(), mirror);
+        byte value = table.get(HEADER_BYTES + index);
+        return value == ILLEGAL ? null : result(value);
+    }
+
+    /**
+     * @return the move keeping the best result: the fastest mate when winning, a move
+     * that holds the draw, or the slowest mate when losing. Null if the position isn't
+     * covered or has no moves.
+     */
+    public ChessMove bestMove(ChessGame position) {
+        if (probe(position) == null) {
+            return null;
+        }
+        var game = new ChessGame(position);
+        var moves = new MoveList();
+        game.generateMoves(moves);
+        int best = PackedMove.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            var reply = probe(game);
+            game.undoMove();
+            if (reply == null) {
+                continue; // only possible for a position no table covers, which a move can't reach
+            }
+            // rank from our side: their loss is best, and sooner is better; their win is worst, and later is better
+            int rank = switch (reply.outcome()) {
+                case LOSS -> 1000 - reply.plies();
+                case DRAW -> 0;
+                case WIN -> -1000 + reply.plies();
+            };
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = moves.get(i);
+            }
+        }
+        return best == PackedMove.NONE ? null : PackedMove.toChessMove(best);
+    }
+
+    public enum Outcome {
+        WIN, DRAW, LOSS
+    }
+
+    /**
+     * @param plies how many plies until mate with perfect play, or 0 for a draw
+     */
+    public record Result(Outcome outcome, int plies) {
+    }
+
+    void add(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not an endgame table: " + file);
+            }
+            var bytes = new byte[SIGNATURE_BYTES];
+            header.get(bytes);
+            var signature = new String(bytes, StandardCharsets.US_ASCII).trim();
+            if (!signature.equals(canonical(signature)) || channel.size() != HEADER_BYTES + size(signature.length())) {
+                throw new IOException("Endgame table " + file + " is damaged");
+            }
+            tables.put(signature, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static void write(Path file, String signature, byte[] values) throws IOException {
+        var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC).put(String.format("%-" + SIGNATURE_BYTES + "s", signature).getBytes(StandardCharsets.US_ASCII));
+        header.flip();
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(new ByteBuffer[]{header, ByteBuffer.wrap(values)});
+        }
+    }
+
+    static Result result(byte value) {
+        if (value > 0) {
+            return new Result(Outcome.WIN, value);
+        }
+        return value == 0 ? new Result(Outcome.DRAW, 0) : new Result(Outcome.LOSS, -value - 1);
+    }
+
+    static byte win(int plies) {
+        return (byte) checkPlies(plies);
+    }
+
+    static byte loss(int plies) {
+        return (byte) (-checkPlies(plies + 1));
+    }
+
+    private static int checkPlies(int plies) {
+        if (plies > Byte.MAX_VALUE) {
+            throw new IllegalStateException("Mate is too far away to store: " + plies + " plies");
+        }
+        return plies;
+    }
+
+    /**
+     * @return how many entries a table of this many pieces has: every square for every
+     * piece, for each team to move
+     */
+    static int size(int pieces) {
+        return 2 << (6 * pieces);
+    }
+
+    /**
+     * @return the material on the board, like KRKP: white's king and pieces, then black's,
+     * each in {@link ChessPiece.PieceType} order
+     */
+    static String signature(ChessBoard board) {
+        var signature = new StringBuilder();
+        for (var team : ChessGame.TeamColor.values()) {
+            for (var type : TYPES) {
+                int count = Long.bitCount(board.getBitboard(team, type));
+                signature.append(String.valueOf(LETTERS.charAt(type.ordinal())).repeat(count));
+            }
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @return the signature with the stronger side as white, which is the one tables are built for
+     */
+    static String canonical(String signature) {
+        int split = signature.indexOf('K', 1);
+        if (split < 0) {
+            throw new IllegalArgumentException("Both teams need a king: " + signature);
+        }
+        var white = signature.substring(0, split);
+        var black = signature.substring(split);
+        int difference = strength(white) - strength(black);
+        boolean swap = difference < 0 || (difference == 0 && white.compareTo(black) < 0);
+        return swap ? black + white : signature;
+    }
+
+    /**
+     * @return the signature's pieces in table order
+     */
+    static ChessPiece[] pieces(String signature) {
+        var pieces = new ChessPiece[signature.length()];
+        var team = ChessGame.TeamColor.WHITE;
+        for (int i = 0; i < pieces.length; i++) {
+            int type = LETTERS.indexOf(signature.charAt(i));
+            if (type < 0) {
+                throw new IllegalArgumentException("Unknown piece letter in " + signature);
+            }
+            if (type == 0 && i > 0) {
+                team = ChessGame.TeamColor.BLACK;
+            }
+            pieces[i] = ChessPiece.of(team, TYPES[type]);
+        }
+        return pieces;
+    }
+
+    /**
+     * @param mirror look the position up with the colors swapped and the board flipped
+     * @return the entry for a position whose material matches pieces
+     */
+    static int index(ChessPiece[] pieces, ChessBoard board, ChessGame.TeamColor turn, boolean mirror) {
+        int index = 0;
+        long remaining = 0L;
+        for (int i = 0; i < pieces.length; i++) {
+            var piece = pieces[i];
+            if (i == 0 || !piece.equals(pieces[i - 1])) {
+                var team = mirror ? opponent(piece.getTeamColor()) : piece.getTeamColor();
+                remaining = board.getBitboard(team, piece.getPieceType());
+                if (mirror) {
+                    remaining = Long.reverseBytes(remaining); // flips the ranks
+                }
+            }
+            // identical pieces go in square order, so each position has one entry
+            index = index << 6 | Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+        }
+        var tableTurn = mirror ? opponent(turn) : turn;
+        return index << 1 | tableTurn.ordinal();
+    }
+
+    static ChessGame.TeamColor opponent(ChessGame.TeamColor team) {
+        return team == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+
+    static boolean isBareKings(String signature) {
+        return signature.equals("KK");
+    }
+
+    private static int strength(String side) {
+        int strength = 0;
+        for (int i = 0; i < side.length(); i++) {
+            strength += STRENGTH[LETTERS.indexOf(side.charAt(i))];
+        }
+        return strength;
+    }
+}
@@ -0,0 +1,166 @@
+package chess.engine;
+
+import chess.PackedMove;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed-size hash table of search results, shared by any number of search threads
+ * without locks.
+ * <p>
+ * Each entry is two longs, a key word and a data word, stored in one preallocated
+ * array. The data word packs the best move, score, depth, bound and the generation
+ * (search number) it was written in. The key word holds the position key XORed with
+ * the data word. Two threads writing the same slot at once can leave one thread's key
+ * next to the other's data. That mix no longer XORs back to the probed key, so a
+ * probe treats it as a miss and never trusts a torn entry. This is Hyatt's lockless
+ * hashing.
+ * <p>
+ * Slots are grouped in buckets of {@value #BUCKET} that share an index. A store
+ * overwrites the same position if it is already there. Otherwise it overwrites the
+ * bucket's least useful slot: the shallowest one, counting results from earlier
+ * searches as shallower still.
+ * <p>
+ * What counts as an earlier search is up to whoever owns the table, through
+ * {@link #newSearch}. A table used by one search at a time can start a new generation
+ * before each search. A table shared by searches of different games running at once
+ * must not, or each search would age the others' entries while they still need them;
+ * the owner should start a new generation on a clock instead, once every few searches'
+ * worth of time.
+ */
+public final class TranspositionTable {
+
+    public static final int EXACT = 0;
+    public static final int LOWER = 1; // the score is at least this much (a beta cutoff)
+    public static final int UPPER = 2; // the score is at most this much (nothing beat alpha)
+
+    /** returned by {@link #probe} when the position isn't stored */
+    public static final long MISS = 0L;
+
+    private static final int BUCKET = 4;
+    private static final int GENERATIONS = 64;
+    private static final long VALID = 1L << 63; // so a stored data word is never MISS
+
+    private final long[] table; // key word, data word, key word, data word, ...
+    private final int bucketMask;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * @param megabytes how much memory to use, rounded down to a power of two slots
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Table size must be at least 1 MB");
+        }
+        long slots = Long.highestOneBit((long) megabytes * 1024 * 1024 / 16);
+        slots = Math.min(slots, 1L << 29); // largest long[] a Java array allows
+        table = new long[(int) slots * 2];
+        bucketMask = (int) (slots / BUCKET) - 1;
+    }
+
+    /**
+     * Starts a new generation, so entries from earlier ones become the first to be
+     * replaced. Safe to call while other threads are searching.
+     */
+    public void newSearch() {
+        generation.updateAndGet(current -> (current + 1) & (GENERATIONS - 1));
+    }
+
+    /**
+     * @return the data word stored for the position, or {@link #MISS}
+     */
+    public long probe(long key) {
+        int index = bucketIndex(key);
+        for (int slot = index; slot < index + BUCKET * 2; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != MISS) {
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * @param score a mate score has to be made relative to this position first, see {@link Searcher}
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int current = generation.get();
+        int index = bucketIndex(key);
+        int victim = index;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int slot = index; slot < index + BUCKET * 2; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key || data == MISS) {
+                if (data != MISS && move == PackedMove.NONE) {
+                    move = move(data); // keep the old best move rather than forget it
+                }
+                victim = slot;
+                break;
+            }
+            int age = (current - generation(data)) & (GENERATIONS - 1);
+            int worth = depth(data) - 8 * age;
+            if (worth < victimWorth) {
+                victim = slot;
+                victimWorth = worth;
+            }
+        }
+        long data = VALID
+                | (move & 0xFFFFL)
+                | ((score & 0xFFFFL) << 16)
+                | ((long) Math.clamp(depth, 0, 255) << 32)
+                | ((long) bound << 40)
+                | ((long) current << 42);
+        table[victim] = key ^ data;
+        table[victim + 1] = data;
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation.set(0);
+    }
+
+    /**
+     * @return how full the table is with results from the current generation, in parts
+     * per thousand, sampled from the first thousand slots
+     */
+    public int hashfull() {
+        int current = generation.get();
+        int sample = Math.min(1000, table.length / 2);
+        int used = 0;
+        for (int slot = 0; slot < sample * 2; slot += 2) {
+            long data = table[slot + 1];
+            if (data != MISS && generation(data) == current) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    public static int move(long data) {
+        return (int) data & 0xFFFF;
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 16);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 40) & 3;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> 42) & (GENERATIONS - 1);
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET * 2;
+    }
+}
@@ -0,0 +1,52 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AttacksTest {
+
+    @Test
+    void magicLookupsMatchRayWalk() {
+        var random = new Random(240);
+        for (int trial = 0; trial < 2000; trial++) {
+            long occupied = random.nextLong() & random.nextLong();
+            int square = random.nextInt(64);
+            assertEquals(walk(square, occupied, new int[][]{{1, 0}, {-1, 0}, {0, 1}, {0, -1}}),
+                    Attacks.rook(square, occupied));
+            assertEquals(walk(square, occupied, new int[][]{{1, 1}, {1, -1}, {-1, 1}, {-1, -1}}),
+                    Attacks.bishop(square, occupied));
+        }
+    }
+
+    @Test
+    void leaperTables() {
+        assertEquals(2, Long.bitCount(Attacks.KNIGHT[Bitboards.square(1, 1)]));
+        assertEquals(8, Long.bitCount(Attacks.KNIGHT[Bitboards.square(4, 4)]));
+        assertEquals(3, Long.bitCount(Attacks.KING[Bitboards.square(8, 8)]));
+        assertEquals(Bitboards.bit(Bitboards.square(3, 2)),
+                Attacks.PAWN[ChessGame.TeamColor.WHITE.ordinal()][Bitboards.square(2, 1)]);
+        assertEquals(Bitboards.bit(Bitboards.square(6, 7)),
+                Attacks.PAWN[ChessGame.TeamColor.BLACK.ordinal()][Bitboards.square(7, 8)]);
+    }
+
+    private long walk(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int row = Bitboards.row(square) + direction[0];
+            int col = Bitboards.column(square) + direction[1];
+            while (Bitboards.onBoard(row, col)) {
+                long bit = Bitboards.bit(Bitboards.square(row, col));
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return attacks;
+    }
+}
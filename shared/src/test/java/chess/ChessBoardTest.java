@@ -0,0 +1,128 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessBoardTest {
+
+    @Test
+    void bitboardsTrackStartingBoard() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        assertEquals(0x000000000000FF00L, board.getBitboard(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        assertEquals(0x1000000000000000L, board.getBitboard(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        assertEquals(0x000000000000FFFFL, board.getTeamBitboard(ChessGame.TeamColor.WHITE));
+        assertEquals(0xFFFF00000000FFFFL, board.getOccupied());
+    }
+
+    @Test
+    void addAndRemoveKeepBitboardsInSync() {
+        var board = new ChessBoard();
+        var position = new ChessPosition(4, 5);
+        board.addPiece(position, new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        board.addPiece(position, new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        assertEquals(0L, board.getBitboard(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        assertEquals(1L << 28, board.getBitboard(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        board.removePiece(position);
+        assertEquals(0L, board.getOccupied());
+        assertNull(board.getPiece(position));
+    }
+
+    @Test
+    void gsonRoundTripRebuildsBitboards() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var copy = new Gson().fromJson(new Gson().toJson(board), ChessBoard.class);
+        assertEquals(board, copy);
+        assertEquals(board.getOccupied(), copy.getOccupied());
+        assertEquals(board.getZobristKey(), copy.getZobristKey());
+    }
+
+    @Test
+    void pieceListsFollowCaptures() throws InvalidMoveException {
+        var game = new ChessGame();
+        var board = game.getBoard();
+        assertEquals(16, board.pieceCount(ChessGame.TeamColor.BLACK));
+        assertEquals(Bitboards.square(8, 5), board.kingSquare(ChessGame.TeamColor.BLACK));
+
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null));
+        assertEquals(15, board.pieceCount(ChessGame.TeamColor.BLACK));
+        long listed = 0L;
+        for (int i = 0; i < board.pieceCount(ChessGame.TeamColor.BLACK); i++) {
+            listed |= Bitboards.bit(board.pieceSquare(ChessGame.TeamColor.BLACK, i));
+        }
+        assertEquals(board.getTeamBitboard(ChessGame.TeamColor.BLACK), listed);
+
+        board.removePiece(new ChessPosition(1, 5));
+        assertEquals(ChessGame.NO_SQUARE, board.kingSquare(ChessGame.TeamColor.WHITE));
+        assertNull(game.getKingPosition(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void gsonReadsBackSharedInstances() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var copy = new Gson().fromJson(new Gson().toJson(board), ChessBoard.class);
+        var position = ChessPosition.of(1, 5);
+        assertSame(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING), copy.getPiece(position));
+        assertSame(position, new Gson().fromJson(new Gson().toJson(position), ChessPosition.class));
+        assertEquals(new ChessPosition(9, 1), ChessPosition.of(9, 1));
+    }
+
+    @Test
+    void scoresFollowMovesAndUndos() {
+        var game = Perft.POSITIONS.get(1).load();
+        var board = game.getBoard();
+        var start = new ChessBoard(board);
+        var moves = new MoveList();
+        game.generateMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            var rebuilt = new ChessBoard(board);
+            for (var team : ChessGame.TeamColor.values()) {
+                assertEquals(rebuilt.getMidgameScore(team), board.getMidgameScore(team));
+                assertEquals(rebuilt.getEndgameScore(team), board.getEndgameScore(team));
+            }
+            assertEquals(rebuilt.getPhase(), board.getPhase());
+            assertEquals(rebuilt.getPawnKey(), board.getPawnKey());
+            game.undoMove();
+        }
+        assertEquals(start.getMidgameScore(ChessGame.TeamColor.WHITE), board.getMidgameScore(ChessGame.TeamColor.WHITE));
+        assertEquals(ChessBoard.MAX_PHASE, start.getPhase());
+    }
+
+    @Test
+    void staticExchangeResolvesCaptures() {
+        // a pawn takes an undefended knight
+        assertEquals(320, exchange("4k3/8/8/3n4/4P3/8/8/4K3 w - -", 4, 5, 5, 4));
+        // a queen takes a pawn defended by a pawn
+        assertEquals(100 - 900, exchange("4k3/2p5/3p4/8/8/8/3Q4/4K3 w - -", 2, 4, 6, 4));
+        // rook takes rook, the rook behind recaptures, the queen behind that recaptures
+        assertEquals(0, exchange("3rk3/3r4/8/8/8/8/3R4/3QK3 w - -", 2, 4, 7, 4));
+        // two rooks against two, with no king nearby: the rook behind wins one through an x-ray
+        assertEquals(500, exchange("3r3k/3r4/8/8/8/8/3R4/3RK3 w - -", 2, 4, 7, 4));
+        // the king may not recapture onto a defended square
+        assertEquals(500, exchange("8/8/8/8/8/4k3/5r2/5RK1 w - -", 1, 6, 2, 6));
+    }
+
+    @Test
+    void staticExchangeHandlesPromotionsAndEnPassant() {
+        var board = ChessGame.fromFen("1r2k3/P7/8/8/8/8/8/4K3 w - -").getBoard();
+        // promoting on a8 with the rook watching loses the pawn; taking the rook gains it
+        assertEquals(-100, board.staticExchange(new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1),
+                ChessPiece.PieceType.QUEEN)));
+        assertEquals(500 + 800, board.staticExchange(new ChessMove(new ChessPosition(7, 1),
+                new ChessPosition(8, 2), ChessPiece.PieceType.QUEEN)));
+        // en passant, with the capturing pawn recaptured by a pawn on the next file
+        assertEquals(0, exchange("4k3/2p5/8/3pP3/8/8/8/4K3 w - d6", 5, 5, 6, 4));
+    }
+
+    private static int exchange(String fen, int fromRow, int fromCol, int toRow, int toCol) {
+        var board = ChessGame.fromFen(fen).getBoard();
+        return board.staticExchange(new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null));
+    }
+}
@@ -0,0 +1,293 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessGameTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+
+    @Test
+    void undoMoveRestoresSpecialMoves() throws InvalidMoveException {
+        var game = new ChessGame();
+        var start = new ChessBoard();
+        start.resetBoard();
+
+        game.makeMove(move(2, 5, 4, 5));
+        game.makeMove(move(7, 1, 6, 1));
+        game.makeMove(move(4, 5, 5, 5));
+        game.makeMove(move(7, 4, 5, 4)); // two-step next to the white pawn
+        game.makeMove(move(5, 5, 6, 4)); // en passant
+        assertNull(game.getBoard().getPiece(new ChessPosition(5, 4)));
+        game.makeMove(move(6, 1, 5, 1));
+        game.makeMove(move(1, 7, 3, 6));
+        game.makeMove(move(5, 1, 4, 1));
+        game.makeMove(move(1, 6, 4, 3));
+        game.makeMove(move(4, 1, 3, 1));
+        game.makeMove(move(1, 5, 1, 7)); // castle
+        assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK),
+                game.getBoard().getPiece(new ChessPosition(1, 6)));
+        assertEquals(ChessGame.BLACK_KINGSIDE | ChessGame.BLACK_QUEENSIDE, game.castlingRights);
+
+        for (int i = 0; i < 11; i++) {
+            game.undoMove();
+        }
+        assertEquals(start, game.getBoard());
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+        assertEquals(ChessGame.ALL_CASTLING, game.castlingRights);
+        assertThrows(IllegalStateException.class, game::undoMove);
+    }
+
+    @Test
+    void undoMoveRestoresPromotionCapture() {
+        var board = new ChessBoard();
+        board.addPiece(new ChessPosition(7, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        board.addPiece(new ChessPosition(8, 1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        var game = new ChessGame();
+        game.setBoard(board);
+
+        game.doMove(new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN));
+        assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN),
+                board.getPiece(new ChessPosition(8, 1)));
+        game.undoMove();
+        assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN),
+                board.getPiece(new ChessPosition(7, 2)));
+        assertEquals(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK),
+                board.getPiece(new ChessPosition(8, 1)));
+    }
+
+    @Test
+    void zobristKeyFollowsPositionNotHistory() throws InvalidMoveException {
+        var game = new ChessGame();
+        long start = game.getZobristKey();
+        game.makeMove(move(1, 7, 3, 6));
+        assertNotEquals(start, game.getZobristKey());
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(3, 6, 1, 7));
+        game.makeMove(move(6, 6, 8, 7));
+        assertEquals(start, game.getZobristKey());
+
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertNotEquals(start, game.getZobristKey());
+        assertEquals(game.getBoard().getZobristKey(), new ChessGame().getBoard().getZobristKey());
+    }
+
+    @Test
+    void evaluateStatusMatchesSingleChecks() {
+        var board = new ChessBoard();
+        board.addPiece(new ChessPosition(8, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(6, 7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(7, 6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        var game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(ChessGame.GameStatus.STALEMATE, game.evaluateStatus(ChessGame.TeamColor.BLACK));
+        assertTrue(game.isInStalemate(ChessGame.TeamColor.BLACK));
+
+        board.addPiece(new ChessPosition(7, 7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        board.removePiece(new ChessPosition(7, 6));
+        assertEquals(ChessGame.GameStatus.CHECKMATE, game.evaluateStatus(ChessGame.TeamColor.BLACK));
+        assertTrue(game.isInCheckmate(ChessGame.TeamColor.BLACK));
+
+        board.removePiece(new ChessPosition(6, 7));
+        assertEquals(ChessGame.GameStatus.CHECK, game.evaluateStatus(ChessGame.TeamColor.BLACK));
+        assertEquals(ChessGame.GameStatus.ONGOING, game.evaluateStatus(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void legalMoveCacheFollowsPosition() throws InvalidMoveException {
+        var game = new ChessGame();
+        var moves = game.legalMoves(ChessGame.TeamColor.WHITE);
+        assertSame(moves, game.legalMoves(ChessGame.TeamColor.WHITE));
+        assertEquals(20, moves.size());
+        assertEquals(2, game.validMoves(new ChessPosition(1, 2)).size());
+
+        game.getBoard().removePiece(new ChessPosition(2, 4)); // behind the game's back
+        assertEquals(5, game.validMoves(new ChessPosition(1, 3)).size());
+        assertEquals(20, game.validMoves(ChessGame.TeamColor.BLACK).size());
+
+        game.makeMove(move(1, 3, 5, 7));
+        assertEquals(8, game.validMoves(new ChessPosition(5, 7)).size());
+        assertEquals(19, game.validMoves(ChessGame.TeamColor.BLACK).size()); // g7 can no longer go two
+    }
+
+    @Test
+    void fenRoundTrips() throws InvalidMoveException {
+        var start = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+        assertEquals(start, new ChessGame().toFen());
+        assertEquals(new ChessGame(), ChessGame.fromFen(start));
+        assertEquals(new ChessGame().getZobristKey(), ChessGame.fromFen(start).getZobristKey());
+
+        for (var position : Perft.POSITIONS) {
+            var game = position.load();
+            var copy = ChessGame.fromFen(game.toFen());
+            assertEquals(game, copy, position.name());
+            assertEquals(game.getZobristKey(), copy.getZobristKey(), position.name());
+            assertEquals(game.toFen(), copy.toFen());
+        }
+
+        var game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", game.toFen()); // no pawn can take
+        game.makeMove(move(7, 1, 6, 1));
+        game.makeMove(move(4, 5, 5, 5));
+        game.makeMove(move(7, 4, 5, 4));
+        assertEquals("rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3", game.toFen());
+        var copy = ChessGame.fromFen(game.toFen());
+        assertEquals(game.getZobristKey(), copy.getZobristKey());
+        assertTrue(copy.validMoves(ChessGame.TeamColor.WHITE).contains(move(5, 5, 6, 4)));
+
+        // the move counters carry on from where the string left them
+        var middlegame = ChessGame.fromFen("4k2r/8/8/8/8/8/8/R3K3 b - - 12 40");
+        assertEquals(40, middlegame.getFullmoveNumber());
+        assertEquals("4k2r/8/8/8/8/8/8/R3K3 b - - 12 40", middlegame.toFen());
+        middlegame.makeMove(move(8, 8, 7, 8));
+        assertEquals("4k3/7r/8/8/8/8/8/R3K3 w - - 13 41", middlegame.toFen());
+        assertEquals(middlegame.toFen(), new ChessGame(middlegame).toFen());
+    }
+
+    @Test
+    void fenCastlingNeedsKingAndRook() {
+        var game = ChessGame.fromFen("4k2r/8/8/8/8/8/8/R3K3 w KQkq -");
+        assertEquals(ChessGame.WHITE_QUEENSIDE | ChessGame.BLACK_KINGSIDE, game.castlingRights);
+        assertEquals("4k2r/8/8/8/8/8/8/R3K3 w Qk - 0 1", game.toFen());
+        assertEquals(0, ChessGame.fromFen("4k2r/8/8/8/8/8/8/R3K3 b - - 12 40").castlingRights);
+        assertEquals(ChessGame.TeamColor.BLACK, ChessGame.fromFen("4k2r/8/8/8/8/8/8/R3K3 b - - 12 40").getTeamTurn());
+    }
+
+    @Test
+    void fenRejectsMalformedStrings() {
+        for (var fen : new String[]{
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq -", // seven ranks
+                "rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -", // nine files
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq -",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq -",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq -",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e3", // white can't take on rank 3
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 extra",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - zero 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w"}) {
+            assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(fen), fen);
+        }
+    }
+
+    @Test
+    void recordsAndReplaysMoveHistory() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        game.makeMove(move(7, 4, 5, 4));
+        game.makeMove(move(4, 5, 5, 4)); // a capture
+        assertArrayEquals(new short[]{(short) PackedMove.of(12, 28, PackedMove.NORMAL),
+                (short) PackedMove.of(51, 35, PackedMove.NORMAL), (short) PackedMove.of(28, 35, PackedMove.NORMAL)},
+                game.getMoveHistory());
+
+        var replayed = new ChessGame(game.getMoveHistory());
+        assertEquals(game, replayed);
+        assertEquals(game.getZobristKey(), replayed.getZobristKey());
+        replayed.undoMove();
+        assertEquals(2, replayed.getMoveHistory().length);
+        assertArrayEquals(game.getMoveHistory(), new ChessGame(game).getMoveHistory());
+
+        for (int i = 0; i < 300; i++) { // past the first array
+            game.doMove(PackedMove.of(62, 45, PackedMove.NORMAL));
+            game.undoMove();
+            game.doMove(PackedMove.of(62, 45, PackedMove.NORMAL));
+            game.doMove(PackedMove.of(6, 21, PackedMove.NORMAL));
+            game.doMove(PackedMove.of(45, 62, PackedMove.NORMAL));
+            game.doMove(PackedMove.of(21, 6, PackedMove.NORMAL));
+        }
+        assertEquals(1203, game.getMoveHistory().length);
+        assertEquals(game, new ChessGame(game.getMoveHistory()));
+
+        game.setBoard(new ChessBoard());
+        assertEquals(0, game.getMoveHistory().length);
+    }
+
+    @Test
+    void replayRejectsIllegalMoves() {
+        var moves = new short[]{(short) PackedMove.of(12, 28, PackedMove.NORMAL), (short) PackedMove.of(12, 28, PackedMove.NORMAL)};
+        assertThrows(IllegalArgumentException.class, () -> new ChessGame(moves));
+    }
+
+    @Test
+    void detectsThreefoldRepetition() throws InvalidMoveException {
+        var game = new ChessGame();
+        for (int round = 0; round < 2; round++) {
+            assertNull(game.getDrawReason());
+            game.makeMove(move(1, 7, 3, 6));
+            game.makeMove(move(8, 7, 6, 6));
+            game.makeMove(move(3, 6, 1, 7));
+            game.makeMove(move(6, 6, 8, 7));
+        }
+        assertTrue(game.isThreefoldRepetition()); // the start, twice more
+        assertEquals(ChessGame.DrawReason.THREEFOLD_REPETITION, game.getDrawReason());
+        game.undoMove();
+        assertFalse(game.isThreefoldRepetition());
+
+        // a pawn move between the knight moves starts the count over
+        game = new ChessGame();
+        game.makeMove(move(1, 7, 3, 6));
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(3, 6, 1, 7));
+        game.makeMove(move(6, 6, 8, 7));
+        game.makeMove(move(2, 5, 3, 5));
+        for (int round = 0; round < 2; round++) {
+            game.makeMove(move(8, 7, 6, 6));
+            game.makeMove(move(1, 7, 3, 6));
+            game.makeMove(move(6, 6, 8, 7));
+            game.makeMove(move(3, 6, 1, 7));
+        }
+        assertEquals(8, game.getHalfmoveClock());
+        assertTrue(game.isThreefoldRepetition());
+        assertNull(ChessGame.fromFen(game.toFen()).getDrawReason()); // a FEN has no history
+    }
+
+    @Test
+    void countsTheFiftyMoveRule() throws InvalidMoveException {
+        var game = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/R3K3 w - - 99 80");
+        assertEquals(99, game.getHalfmoveClock());
+        assertFalse(game.isFiftyMoveRule());
+        game.makeMove(move(1, 1, 2, 1));
+        assertEquals(100, game.getHalfmoveClock());
+        assertEquals(ChessGame.DrawReason.FIFTY_MOVE_RULE, game.getDrawReason());
+        assertEquals("4k3/8/8/8/8/8/R3P3/4K3 b - - 100 80", game.toFen());
+        game.undoMove();
+        assertEquals(99, game.getHalfmoveClock());
+
+        game.makeMove(move(2, 5, 3, 5)); // a pawn move resets it
+        assertEquals(0, game.getHalfmoveClock());
+        game.makeMove(move(8, 5, 7, 5));
+        assertEquals(1, game.getHalfmoveClock());
+        game.makeMove(move(1, 1, 8, 1));
+        assertEquals(2, game.getHalfmoveClock());
+        game.makeMove(move(7, 5, 7, 4));
+        game.makeMove(move(8, 1, 8, 4));
+        assertEquals(4, new ChessGame(game).getHalfmoveClock());
+        game.makeMove(move(7, 4, 8, 4)); // and so does a capture
+        assertEquals(0, game.getHalfmoveClock());
+    }
+
+    @Test
+    void detectsInsufficientMaterial() {
+        for (var fen : new String[]{
+                "4k3/8/8/8/8/8/8/4K3 w - -",
+                "4k3/8/8/8/8/8/8/2B1K3 w - -",
+                "4k3/8/8/8/8/8/8/1N2K3 b - -",
+                "4kb2/8/8/8/8/8/8/2B1K3 w - -", // both on dark squares
+                "4k3/8/8/8/8/8/8/B1B1K1B1 w - -"}) {
+            assertEquals(ChessGame.DrawReason.INSUFFICIENT_MATERIAL, ChessGame.fromFen(fen).getDrawReason(), fen);
+        }
+        for (var fen : new String[]{
+                "4k3/8/8/8/8/8/4P3/4K3 w - -",
+                "4k3/8/8/8/8/8/8/R3K3 w - -",
+                "4k3/8/8/8/8/8/8/1NN1K3 w - -",
+                "2b1k3/8/8/8/8/8/8/2B1K3 w - -", // one on each color
+                "4k3/8/8/8/8/8/8/1NB1K3 w - -"}) {
+            assertFalse(ChessGame.fromFen(fen).hasInsufficientMaterial(), fen);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameCodecTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+
+    private static void assertSameGame(ChessGame expected, ChessGame actual) {
+        assertEquals(expected, actual);
+        assertEquals(expected.getZobristKey(), actual.getZobristKey());
+        assertEquals(expected.castlingRights, actual.castlingRights);
+        assertEquals(expected.enPassantSquare, actual.enPassantSquare);
+        assertEquals(expected.validMoves(expected.getTeamTurn()), actual.validMoves(actual.getTeamTurn()));
+        assertArrayEquals(expected.getMoveHistory(), actual.getMoveHistory());
+    }
+
+    @Test
+    void roundTripsEveryPosition() {
+        var start = new ChessGame();
+        var bytes = GameCodec.encode(start);
+        assertEquals(GameCodec.MAX_POSITION_BYTES + 8, bytes.length);
+        assertEquals(bytes.length, GameCodec.size(start));
+        assertSameGame(start, GameCodec.decode(bytes));
+
+        for (var position : Perft.POSITIONS) {
+            var game = position.load();
+            var decoded = GameCodec.decode(GameCodec.encode(game));
+            assertSameGame(game, decoded);
+            assertEquals(game.toFen(), decoded.toFen(), position.name());
+        }
+    }
+
+    @Test
+    void keepsSpecialMoveStateAndGameOver() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        game.makeMove(move(7, 1, 6, 1));
+        game.makeMove(move(4, 5, 5, 5));
+        game.makeMove(move(7, 4, 5, 4)); // two-step next to the white pawn
+        game.makeMove(move(1, 5, 2, 5)); // and the white king gives up castling
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        game.makeMove(move(2, 5, 1, 5));
+        var decoded = GameCodec.decode(GameCodec.encode(game));
+        assertSameGame(game, decoded);
+        assertEquals(ChessGame.BLACK_KINGSIDE | ChessGame.BLACK_QUEENSIDE, decoded.castlingRights);
+
+        var twoStep = ChessGame.fromFen("rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6");
+        assertSameGame(twoStep, GameCodec.decode(GameCodec.encode(twoStep)));
+        assertTrue(GameCodec.decode(GameCodec.encode(twoStep)).validMoves(ChessGame.TeamColor.WHITE)
+                .contains(move(5, 5, 6, 4)));
+
+        game.endGame();
+        assertTrue(GameCodec.decode(GameCodec.encode(game)).getIsGameOver());
+    }
+
+    @Test
+    void readsAndWritesInPlace() {
+        var buffer = ByteBuffer.allocate(3 * GameCodec.MAX_POSITION_BYTES);
+        var endgame = ChessGame.fromFen("8/8/8/4k3/8/8/8/1R2K3 b - -");
+        GameCodec.encode(new ChessGame(), buffer);
+        GameCodec.encode(endgame, buffer);
+        assertEquals(GameCodec.MAX_POSITION_BYTES + 8 + 3 + 8 + 2 + 8, buffer.position()); // three pieces fit in two bytes
+
+        buffer.flip();
+        assertEquals(new ChessGame(), GameCodec.decode(buffer));
+        assertSameGame(endgame, GameCodec.decode(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void keepsTheMoveHistory() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        game.makeMove(move(7, 5, 5, 5));
+        game.makeMove(move(1, 7, 3, 6));
+        var bytes = GameCodec.encode(game);
+        assertEquals(GameCodec.MAX_POSITION_BYTES + 8 + 3 * 2 + 8, bytes.length); // one move since the pawns
+        var decoded = GameCodec.decode(bytes);
+        assertSameGame(game, decoded);
+        assertEquals(game, new ChessGame(decoded.getMoveHistory()));
+    }
+
+    @Test
+    void keepsTheDrawCounts() throws InvalidMoveException {
+        var game = ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 97 60");
+        for (int round = 0; round < 2; round++) {
+            game.makeMove(move(1, 1, 2, 1));
+            game.makeMove(move(8, 5, 8, 4));
+            game.makeMove(move(2, 1, 1, 1));
+            game.makeMove(move(8, 4, 8, 5));
+        }
+        var decoded = GameCodec.decode(GameCodec.encode(game));
+        assertSameGame(game, decoded);
+        assertEquals(105, decoded.getHalfmoveClock());
+        assertEquals(game.toFen(), decoded.toFen());
+        assertEquals(64, decoded.getFullmoveNumber());
+        assertTrue(decoded.isThreefoldRepetition());
+        decoded.makeMove(move(1, 1, 3, 1));
+        assertFalse(decoded.isThreefoldRepetition());
+    }
+
+    @Test
+    void rejectsOtherBytes() {
+        var bytes = GameCodec.encode(new ChessGame());
+        bytes[0] = GameCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(bytes));
+        bytes[0] = GameCodec.VERSION;
+        bytes[bytes.length - 9] = (byte) 0xFF; // piece 15
+        assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(bytes));
+        assertThrows(BufferUnderflowException.class,
+                () -> GameCodec.decode(ByteBuffer.wrap(GameCodec.encode(new ChessGame()), 0, 28)));
+    }
+}
@@ -0,0 +1,59 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegalMoveCacheTest {
+
+    @Test
+    void gamesShareOpeningMoves() throws InvalidMoveException {
+        var cache = new LegalMoveCache(1 << 20);
+        var first = new ChessGame();
+        first.setMoveCache(cache);
+        var second = new ChessGame();
+        second.setMoveCache(cache);
+
+        assertEquals(20, first.validMoves(ChessGame.TeamColor.WHITE).size());
+        assertEquals(20, second.validMoves(ChessGame.TeamColor.WHITE).size());
+        second.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertEquals(1, cache.getStats().hits());
+        assertEquals(1, cache.getStats().misses());
+        assertEquals(1, cache.getStats().entries());
+    }
+
+    @Test
+    void cachedMovesMatchGeneratedMoves() {
+        var cache = new LegalMoveCache(1 << 20);
+        for (var position : Perft.POSITIONS.subList(1, 4)) {
+            var game = position.load();
+            game.setMoveCache(cache);
+            assertEquals(position.nodes()[2], Perft.perft(game, 3), position.name());
+            assertEquals(position.nodes()[2], Perft.perft(game, 3), position.name());
+        }
+        assertTrue(cache.getStats().hitRate() > 0.5);
+    }
+
+    @Test
+    void staysWithinSize() {
+        var cache = new LegalMoveCache(16 * 1024);
+        var game = Perft.POSITIONS.get(1).load();
+        game.setMoveCache(cache);
+        assertEquals(97_862, Perft.perft(game, 3));
+        var stats = cache.getStats();
+        assertTrue(stats.bytes() <= 16 * 1024);
+        assertTrue(stats.evictions() + stats.rejections() > 0);
+    }
+
+    @Test
+    void occupancyGuardsAgainstCollisions() {
+        var cache = new LegalMoveCache(1 << 20);
+        var moves = new MoveList();
+        moves.add(PackedMove.of(12, 28, PackedMove.NORMAL));
+        cache.put(42L, 0xFFFFL, moves);
+        var out = new MoveList();
+        assertFalse(cache.get(42L, 0xFFFEL, out));
+        assertTrue(cache.get(42L, 0xFFFFL, out));
+        assertEquals(PackedMove.of(12, 28, PackedMove.NORMAL), out.get(0));
+    }
+}
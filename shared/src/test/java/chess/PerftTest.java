@@ -0,0 +1,31 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerftTest {
+
+    // deep enough to reach castling, en passant and promotion in every position, shallow enough to stay quick
+    private static final int MAX_NODES = 1_000_000;
+
+    @Test
+    void knownNodeCounts() {
+        for (var position : Perft.POSITIONS) {
+            var game = position.load();
+            for (int depth = 1; depth <= position.maxDepth() && position.nodes()[depth - 1] <= MAX_NODES; depth++) {
+                assertEquals(position.nodes()[depth - 1], Perft.perft(game, depth),
+                        position.name() + " depth " + depth);
+            }
+            assertEquals(position.load(), game, position.name() + " not restored");
+        }
+    }
+
+    @Test
+    void divideAddsUpToPerft() {
+        var game = Perft.POSITIONS.get(1).load();
+        var counts = Perft.divide(game, 2);
+        assertEquals(48, counts.size());
+        assertEquals(2_039L, counts.values().stream().mapToLong(Long::longValue).sum());
+    }
+}
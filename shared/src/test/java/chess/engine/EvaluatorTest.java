@@ -0,0 +1,63 @@
+package chess.engine;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvaluatorTest {
+
+    @Test
+    void startingPositionIsEven() {
+        assertEquals(0, new Evaluator().evaluate(new ChessGame()));
+    }
+
+    @Test
+    void mirroredPositionsScoreTheSame() {
+        var evaluator = new Evaluator();
+        // kiwipete, and the same position with the colors swapped and the board flipped
+        var game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+        var mirror = ChessGame.fromFen("r3k2r/pppbbppp/2n2q1P/1P2p3/3pn3/BN2PNP1/P1PPQPB1/R3K2R b KQkq -");
+        assertEquals(evaluator.evaluate(game), evaluator.evaluate(mirror));
+    }
+
+    @Test
+    void scoresPawnStructure() {
+        // white: an isolated passed pawn on a6. black: doubled, isolated h-pawns, the front one passed
+        var board = ChessGame.fromFen("4k3/7p/P6p/8/8/8/8/4K3 w - -").getBoard();
+        int pawns = Evaluator.pawnStructure(board);
+        assertEquals((-10 + 40) - (-10 + 2 * -10 + 10), PawnHashTable.midgame(pawns));
+        assertEquals((-15 + 100) - (-20 + 2 * -15 + 20), PawnHashTable.endgame(pawns));
+    }
+
+    @Test
+    void endgameWeighsPassedPawnsMore() {
+        var evaluator = new Evaluator();
+        var passed = ChessGame.fromFen("4k3/8/P7/8/8/8/8/4K3 w - -");
+        var blocked = ChessGame.fromFen("4k3/p7/P7/8/8/8/8/4K3 w - -");
+        assertTrue(evaluator.evaluate(passed) > evaluator.evaluate(blocked));
+    }
+
+    @Test
+    void cachesPawnStructure() {
+        var table = new PawnHashTable(1024);
+        var evaluator = new Evaluator(table);
+        var game = new ChessGame();
+        evaluator.evaluate(game);
+        evaluator.evaluate(game);
+        game.getBoard().addPiece(new ChessPosition(3, 3), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        evaluator.evaluate(game);
+        assertEquals(1, table.getMisses());
+        assertEquals(2, table.getHits());
+    }
+
+    @Test
+    void packsNegativeScores() {
+        int packed = PawnHashTable.pack(-35, -120);
+        assertEquals(-35, PawnHashTable.midgame(packed));
+        assertEquals(-120, PawnHashTable.endgame(packed));
+        packed = PawnHashTable.pack(12, -1);
+        assertEquals(12, PawnHashTable.midgame(packed));
+        assertEquals(-1, PawnHashTable.endgame(packed));
+    }
+}
@@ -0,0 +1,34 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Perft;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazySmpSearcherTest {
+
+    @Test
+    void helpersAgreeOnForcedMate() {
+        var game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - -");
+        try (var searcher = new LazySmpSearcher(4, new TranspositionTable(4))) {
+            var result = searcher.search(game, SearchLimits.ofDepth(4));
+            assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), result.bestMove());
+            assertEquals(result.bestMove(), result.principalVariation().getFirst());
+        }
+    }
+
+    @Test
+    void countsEveryThreadsNodes() {
+        var game = Perft.POSITIONS.get(1).load();
+        try (var searcher = new LazySmpSearcher(2, new TranspositionTable(4))) {
+            var result = searcher.search(game, SearchLimits.ofMillis(200));
+            assertTrue(game.validMoves(ChessGame.TeamColor.WHITE).contains(result.bestMove()));
+            assertTrue(result.depth() >= 1);
+            assertTrue(result.nodesPerSecond() > 0);
+            assertFalse(result.principalVariation().isEmpty());
+        }
+    }
+}
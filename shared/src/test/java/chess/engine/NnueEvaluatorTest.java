@@ -0,0 +1,90 @@
+package chess.engine;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NnueEvaluatorTest {
+
+    private static Network randomNetwork(int hidden, long seed) {
+        var random = new Random(seed);
+        var featureWeights = new short[Network.INPUTS * hidden];
+        var hiddenBiases = new short[hidden];
+        var outputWeights = new short[2 * hidden];
+        for (int i = 0; i < featureWeights.length; i++) {
+            featureWeights[i] = (short) random.nextInt(-40, 41);
+        }
+        for (int i = 0; i < hidden; i++) {
+            hiddenBiases[i] = (short) random.nextInt(0, 128);
+        }
+        for (int i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = (short) random.nextInt(-64, 65);
+        }
+        return new Network(hidden, featureWeights, hiddenBiases, outputWeights, random.nextInt(-1000, 1000));
+    }
+
+    @Test
+    void accumulatorsFollowMovesAndUndos() {
+        var network = randomNetwork(32, 1);
+        var game = Perft.POSITIONS.get(1).load();
+        var evaluator = new NnueEvaluator(network);
+        int before = evaluator.evaluate(game);
+        var moves = new MoveList();
+        game.generateMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            assertEquals(new NnueEvaluator(network).evaluate(new ChessGame(game)), evaluator.evaluate(game));
+            game.undoMove();
+        }
+        assertEquals(before, evaluator.evaluate(game));
+    }
+
+    @Test
+    void mirroredPositionsScoreTheSame() {
+        var evaluator = new NnueEvaluator(randomNetwork(16, 2));
+        var game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+        var mirror = ChessGame.fromFen("r3k2r/pppbbppp/2n2q1P/1P2p3/3pn3/BN2PNP1/P1PPQPB1/R3K2R b KQkq -");
+        assertEquals(evaluator.evaluate(game), evaluator.evaluate(mirror));
+    }
+
+    @Test
+    void savedNetworkLoadsBack(@TempDir Path directory) throws IOException {
+        var network = randomNetwork(8, 3);
+        var file = directory.resolve("test.nnue");
+        network.save(file);
+        var loaded = Network.load(file);
+        assertEquals(8, loaded.getHiddenSize());
+        var game = Perft.POSITIONS.get(2).load();
+        assertEquals(new NnueEvaluator(network).evaluate(game), new NnueEvaluator(loaded).evaluate(new ChessGame(game)));
+    }
+
+    @Test
+    void rejectsOtherFiles(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("bad.nnue");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        assertThrows(IOException.class, () -> Network.load(file));
+        randomNetwork(4, 4).save(file);
+        Files.write(file, new byte[]{0}, StandardOpenOption.APPEND);
+        assertThrows(IOException.class, () -> Network.load(file));
+    }
+
+    @Test
+    void searchesWithNetwork() {
+        // a random network makes a poor judge of captures, so keep to the quiet opening
+        var network = randomNetwork(16, 5);
+        var game = new ChessGame();
+        var before = new ChessGame(game);
+        var result = new Searcher(new TranspositionTable(1), new NnueEvaluator(network))
+                .search(game, new SearchLimits(3, 200_000, Long.MAX_VALUE));
+        assertNotNull(result.bestMove());
+        assertEquals(before, game);
+    }
+}
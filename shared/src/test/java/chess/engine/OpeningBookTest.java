@@ -0,0 +1,108 @@
+package chess.engine;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookTest {
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(ChessPosition.of(from.charAt(1) - '0', from.charAt(0) - 'a' + 1),
+                ChessPosition.of(to.charAt(1) - '0', to.charAt(0) - 'a' + 1), null);
+    }
+
+    private static List<ChessMove> line(String... squares) {
+        var moves = new ArrayList<ChessMove>();
+        for (int i = 0; i < squares.length; i += 2) {
+            moves.add(move(squares[i], squares[i + 1]));
+        }
+        return moves;
+    }
+
+    private static OpeningBook book(Path directory) throws IOException {
+        var file = directory.resolve("book.bin");
+        OpeningBook.write(file, List.of(
+                line("e2", "e4", "e7", "e5", "g1", "f3"),
+                line("e2", "e4", "e7", "e5", "g1", "f3", "b8", "c6", "f1", "c4", "f8", "c5", "e1", "g1"),
+                line("e2", "e4", "c7", "c5"),
+                line("d2", "d4", "d7", "d5")));
+        return OpeningBook.open(file);
+    }
+
+    @Test
+    void weighsMovesByHowOftenTheyWerePlayed(@TempDir Path directory) throws IOException {
+        var book = book(directory);
+        assertEquals(10, book.size());
+        var moves = book.getMoves(new ChessGame());
+        assertEquals(List.of(new OpeningBook.BookMove(move("e2", "e4"), 3), new OpeningBook.BookMove(move("d2", "d4"), 1)),
+                moves);
+    }
+
+    @Test
+    void followsTheGame(@TempDir Path directory) throws IOException, InvalidMoveException {
+        var book = book(directory);
+        var game = new ChessGame();
+        game.makeMove(move("e2", "e4"));
+        assertEquals(2, book.getMoves(game).size());
+        game.makeMove(move("c7", "c5"));
+        assertTrue(book.getMoves(game).isEmpty());
+        assertNull(book.pickMove(game, new Random(1)));
+    }
+
+    @Test
+    void readsBackCastling(@TempDir Path directory) throws IOException, InvalidMoveException {
+        var book = book(directory);
+        var game = new ChessGame();
+        for (var move : line("e2", "e4", "e7", "e5", "g1", "f3", "b8", "c6", "f1", "c4", "f8", "c5")) {
+            game.makeMove(move);
+        }
+        assertEquals(move("e1", "g1"), book.pickMove(game, new Random(1)));
+    }
+
+    @Test
+    void picksInProportionToWeight(@TempDir Path directory) throws IOException {
+        var book = book(directory);
+        var random = new Random(7);
+        int kingPawn = 0;
+        for (int i = 0; i < 4000; i++) {
+            if (book.pickMove(new ChessGame(), random).equals(move("e2", "e4"))) {
+                kingPawn++;
+            }
+        }
+        assertEquals(3000, kingPawn, 150);
+    }
+
+    @Test
+    void usesPolyglotKeys() throws InvalidMoveException {
+        var game = new ChessGame();
+        assertEquals(0x463B96181691FC9CL, OpeningBook.polyglotKey(game));
+        game.makeMove(move("e2", "e4"));
+        assertEquals(0x823C9B50FD114196L, OpeningBook.polyglotKey(game));
+        game.makeMove(move("d7", "d5"));
+        game.makeMove(move("e4", "e5"));
+        game.makeMove(move("f7", "f5")); // en passant is possible
+        assertEquals(0x22A48B5A8E47FF78L, OpeningBook.polyglotKey(game));
+        game.makeMove(move("e1", "e2")); // the white king gives up castling
+        assertEquals(0x652A607CA3F242C1L, OpeningBook.polyglotKey(game));
+        game.makeMove(move("e8", "f7"));
+        assertEquals(0x00FDD303C946BDD9L, OpeningBook.polyglotKey(game));
+    }
+
+    @Test
+    void rejectsOtherFiles(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("bad.bin");
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> OpeningBook.open(file));
+        assertThrows(IllegalArgumentException.class,
+                () -> OpeningBook.write(file, List.of(line("e2", "e5"))));
+    }
+}
@@ -0,0 +1,79 @@
+package chess.engine;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearcherTest {
+
+    @Test
+    void findsBackRankMate() {
+        var game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - -");
+        var result = new Searcher().search(game, SearchLimits.ofDepth(4));
+        assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), result.bestMove());
+        assertTrue(Searcher.isMateScore(result.score()));
+        assertTrue(result.score() > 0);
+    }
+
+    @Test
+    void takesHangingQueen() {
+        var game = ChessGame.fromFen("4k3/8/8/3q4/8/8/3R4/4K3 w - -");
+        var result = new Searcher().search(game, SearchLimits.ofDepth(3));
+        assertEquals(new ChessMove(new ChessPosition(2, 4), new ChessPosition(5, 4), null), result.bestMove());
+    }
+
+    @Test
+    void leavesGameUntouched() {
+        var game = Perft.POSITIONS.get(1).load();
+        var before = new ChessGame(game);
+        new Searcher().search(game, SearchLimits.ofDepth(3));
+        assertEquals(before, game);
+        assertEquals(before.getZobristKey(), game.getZobristKey());
+    }
+
+    @Test
+    void stopsWithinNodeBudget() {
+        var game = Perft.POSITIONS.get(1).load();
+        var result = new Searcher().search(game, SearchLimits.ofNodes(20_000));
+        assertNotNull(result.bestMove());
+        assertTrue(game.validMoves(ChessGame.TeamColor.WHITE).contains(result.bestMove()));
+        assertTrue(result.nodes() <= 20_000 || result.depth() == 1);
+    }
+
+    @Test
+    void stopsWithinTimeBudget() {
+        var result = new Searcher().search(new ChessGame(), SearchLimits.ofMillis(100));
+        assertNotNull(result.bestMove());
+        assertTrue(result.millis() < 1_000);
+    }
+
+    @Test
+    void noMoveWhenMated() {
+        var game = ChessGame.fromFen("R5k1/5ppp/8/8/8/8/8/6K1 b - -");
+        var result = new Searcher().search(game, SearchLimits.ofDepth(3));
+        assertNull(result.bestMove());
+        assertEquals(-Searcher.MATE, result.score());
+    }
+
+    @Test
+    void repeatsIntoDrawWhenLosing() throws InvalidMoveException {
+        // the kings shuffle until black can bring about the same position a third time
+        var game = ChessGame.fromFen("7k/8/8/8/Q7/8/8/6K1 b - - 0 1");
+        int[][] shuffle = {{8, 8, 8, 7}, {1, 7, 1, 8}, {8, 7, 8, 8}, {1, 8, 1, 7}, {8, 8, 7, 8},
+                {1, 7, 1, 8}, {7, 8, 8, 8}, {1, 8, 2, 8}, {8, 8, 7, 7}, {2, 8, 1, 8}};
+        for (int[] move : shuffle) {
+            game.makeMove(new ChessMove(new ChessPosition(move[0], move[1]), new ChessPosition(move[2], move[3]), null));
+        }
+        assertNull(game.getDrawReason());
+        var result = new Searcher().search(game, SearchLimits.ofDepth(3));
+        assertEquals(new ChessMove(new ChessPosition(7, 7), new ChessPosition(8, 8), null), result.bestMove());
+        assertEquals(0, result.score());
+    }
+
+    @Test
+    void seesFiftyMoveRuleRunOut() {
+        var game = ChessGame.fromFen("8/8/8/4k3/8/8/4K3/4Q3 w - - 99 80");
+        assertEquals(0, new Searcher().search(game, SearchLimits.ofDepth(4)).score());
+    }
+}
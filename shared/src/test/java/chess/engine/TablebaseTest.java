@@ -0,0 +1,110 @@
+package chess.engine;
+
+import chess.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TablebaseTest {
+
+    @TempDir
+    static Path directory;
+    private static Tablebases tables;
+
+    @BeforeAll
+    static void generate() throws IOException {
+        var generator = new TablebaseGenerator(directory, ForkJoinPool.commonPool());
+        generator.generate("KRK");
+        generator.generate("KPK"); // also builds KQK, KBK and KNK for the promotions
+        tables = Tablebases.open(directory);
+    }
+
+    /**
+     * @return the longest win in the table, in plies, for white to move
+     */
+    private static int longestWin(String signature) throws IOException {
+        var bytes = Files.readAllBytes(directory.resolve(signature + Tablebases.EXTENSION));
+        int longest = 0;
+        for (int i = 16; i < bytes.length; i += 2) { // white to move has the even entries
+            longest = Math.max(longest, bytes[i]);
+        }
+        return longest;
+    }
+
+    @Test
+    void buildsTheSmallerTablesToo() {
+        for (var signature : new String[]{"KQK", "KRK", "KBK", "KNK", "KPK"}) {
+            assertTrue(tables.covers(signature), signature);
+        }
+        assertTrue(tables.covers("KKQ"));
+        assertFalse(tables.covers("KQKR"));
+    }
+
+    @Test
+    void findsTheLongestMates() throws IOException {
+        assertEquals(19, longestWin("KQK")); // mate in 10
+        assertEquals(31, longestWin("KRK")); // mate in 16
+    }
+
+    @Test
+    void probesMateInOne() {
+        var game = ChessGame.fromFen("k7/8/1K6/8/8/8/7Q/8 w - -");
+        assertEquals(new Tablebases.Result(Tablebases.Outcome.WIN, 1), tables.probe(game));
+        assertEquals(new ChessMove(ChessPosition.of(2, 8), ChessPosition.of(8, 8), null), tables.bestMove(game));
+
+        var mated = ChessGame.fromFen("k6Q/8/1K6/8/8/8/8/8 b - -");
+        assertEquals(new Tablebases.Result(Tablebases.Outcome.LOSS, 0), tables.probe(mated));
+        assertNull(tables.bestMove(mated));
+    }
+
+    @Test
+    void knowsPawnEndings() {
+        // the pawn outruns the king
+        var win = tables.probe(ChessGame.fromFen("7k/8/8/P7/8/8/8/7K w - -"));
+        assertEquals(Tablebases.Outcome.WIN, win.outcome());
+        // a rook pawn with the defending king in front of it
+        var draw = tables.probe(ChessGame.fromFen("8/1k6/8/8/8/8/P7/7K w - -"));
+        assertEquals(new Tablebases.Result(Tablebases.Outcome.DRAW, 0), draw);
+    }
+
+    @Test
+    void mirrorsForBlack() {
+        var white = tables.probe(ChessGame.fromFen("7k/8/8/P7/8/8/8/7K w - -"));
+        var black = tables.probe(ChessGame.fromFen("7k/8/8/8/p7/8/8/7K b - -"));
+        assertEquals(white, black);
+        assertEquals(Tablebases.Outcome.LOSS,
+                tables.probe(ChessGame.fromFen("7k/8/8/8/p7/8/8/7K w - -")).outcome());
+    }
+
+    @Test
+    void playsTheWinOut() throws InvalidMoveException {
+        var game = ChessGame.fromFen("8/8/8/4k3/8/8/8/1R2K3 w - -");
+        int plies = tables.probe(game).plies();
+        for (int i = 0; i < plies; i++) {
+            game.makeMove(tables.bestMove(game));
+        }
+        assertTrue(game.isInCheckmate(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    void skipsWhatItDoesNotCover() {
+        assertNull(tables.probe(new ChessGame()));
+        assertNull(tables.probe(ChessGame.fromFen("4k3/8/8/8/8/8/3QR3/4K3 w - -")));
+        assertEquals(new Tablebases.Result(Tablebases.Outcome.DRAW, 0),
+                tables.probe(ChessGame.fromFen("4k3/8/8/8/8/8/8/4K3 w - -")));
+    }
+
+    @Test
+    void rejectsOtherMaterial() throws IOException {
+        var generator = new TablebaseGenerator(directory, ForkJoinPool.commonPool());
+        assertThrows(IllegalArgumentException.class, () -> generator.generate("KQRKR"));
+        assertThrows(IllegalArgumentException.class, () -> generator.generate("KQQ"));
+    }
+}
@@ -0,0 +1,100 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.Perft;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TranspositionTableTest {
+
+    @Test
+    void storesAndProbes() {
+        var table = new TranspositionTable(1);
+        table.store(0x1234_5678_9ABC_DEF0L, 0x0FC1, -29_990, 7, TranspositionTable.LOWER);
+        long data = table.probe(0x1234_5678_9ABC_DEF0L);
+        assertEquals(0x0FC1, TranspositionTable.move(data));
+        assertEquals(-29_990, TranspositionTable.score(data));
+        assertEquals(7, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+        assertEquals(TranspositionTable.MISS, table.probe(0x1234_5678_9ABC_DEF1L));
+    }
+
+    @Test
+    void replacesShallowAndStaleEntriesFirst() {
+        var table = new TranspositionTable(1);
+        long bucket = 5L << 32; // same high bits, so the same bucket
+        for (int i = 0; i < 4; i++) {
+            table.store(bucket | i, 0, 0, 10 + i, TranspositionTable.EXACT);
+        }
+        table.store(bucket | 4, 0, 0, 1, TranspositionTable.EXACT);
+        assertEquals(TranspositionTable.MISS, table.probe(bucket)); // the shallowest went
+        assertNotEquals(TranspositionTable.MISS, table.probe(bucket | 3));
+
+        table.newSearch();
+        table.store(bucket | 5, 0, 0, 1, TranspositionTable.EXACT);
+        assertEquals(TranspositionTable.MISS, table.probe(bucket | 4)); // shallow and old
+        assertNotEquals(TranspositionTable.MISS, table.probe(bucket | 5));
+    }
+
+    @Test
+    void hashfullCountsCurrentSearch() {
+        var table = new TranspositionTable(1);
+        assertEquals(0, table.hashfull());
+        new Searcher(table).search(Perft.POSITIONS.get(1).load(), SearchLimits.ofDepth(5));
+        int full = table.hashfull();
+        assertTrue(full > 0);
+        table.newSearch();
+        assertEquals(0, table.hashfull());
+    }
+
+    @Test
+    void searchesLeaveAPassedInTableUnaged() {
+        // a shared table is aged by its owner, so one game's search mustn't age another's entries
+        var table = new TranspositionTable(1);
+        new Searcher(table).search(Perft.POSITIONS.get(1).load(), SearchLimits.ofDepth(5));
+        int full = table.hashfull();
+        new Searcher(table).search(new ChessGame(), SearchLimits.ofDepth(1));
+        assertTrue(table.hashfull() >= full);
+    }
+
+    @Test
+    void tornWritesAreNeverReturned() throws InterruptedException {
+        // each key's data is derived from the key, so any hit pairing the wrong data shows up
+        var table = new TranspositionTable(1);
+        var bad = new AtomicInteger();
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            long seed = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (long i = 0; i < 200_000; i++) {
+                    long key = ((i * 7 + seed) % 64) << 32 | (i % 16);
+                    table.store(key, (int) (key & 0xFFFF), (int) (key >>> 32), (int) (key & 15), 0);
+                    long data = table.probe(key ^ 1);
+                    if (data != TranspositionTable.MISS
+                            && TranspositionTable.score(data) != (int) (((key ^ 1) >>> 32))) {
+                        bad.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, bad.get());
+    }
+
+    @Test
+    void secondSearchReusesResults() {
+        var table = new TranspositionTable(8);
+        var game = Perft.POSITIONS.get(1).load();
+        var first = new Searcher(table).search(game, SearchLimits.ofDepth(5));
+        var second = new Searcher(table).search(game, SearchLimits.ofDepth(5));
+        assertTrue(second.nodes() < first.nodes() / 2);
+        assertEquals(first.score(), second.score());
+        assertTrue(new ChessGame(game).validMoves(ChessGame.TeamColor.WHITE).contains(second.bestMove()));
+    }
+}